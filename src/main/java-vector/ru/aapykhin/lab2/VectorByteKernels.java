@@ -0,0 +1,69 @@
+package ru.aapykhin.lab2;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+final class VectorByteKernels implements ByteKernels {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int SCALAR_PREFIX = 16;
+    private static final ScalarByteKernels SCALAR = ScalarByteKernels.INSTANCE;
+
+    @Override
+    public int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        int head = Math.min(to, from + SCALAR_PREFIX);
+        int found = SCALAR.indexOf(buffer, from, head, value);
+        if (found >= 0 || head == to) {
+            return found;
+        }
+        return vectorIndexOf(buffer, head, to, value);
+    }
+
+    private static int vectorIndexOf(ByteBuffer buffer, int head, int to, byte value) {
+        int i = head;
+        int bound = head + SPECIES.loopBound(to - head);
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> matches = ByteVector.fromByteBuffer(SPECIES, buffer, i, ByteOrder.nativeOrder())
+                    .eq(value);
+            if (matches.anyTrue()) {
+                return i + matches.firstTrue();
+            }
+        }
+        return SCALAR.indexOf(buffer, i, to, value);
+    }
+
+    @Override
+    public int mismatch(ByteBuffer buffer, int offsetA, int offsetB, int length) {
+        int head = Math.min(length, SCALAR_PREFIX);
+        int found = SCALAR.mismatch(buffer, offsetA, offsetB, head);
+        if (found >= 0 || head == length) {
+            return found;
+        }
+        return vectorMismatch(buffer, offsetA, offsetB, head, length);
+    }
+
+    private static int vectorMismatch(ByteBuffer buffer, int offsetA, int offsetB, int head, int length) {
+        int i = head;
+        int bound = head + SPECIES.loopBound(length - head);
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector a = ByteVector.fromByteBuffer(SPECIES, buffer, offsetA + i, ByteOrder.nativeOrder());
+            ByteVector b = ByteVector.fromByteBuffer(SPECIES, buffer, offsetB + i, ByteOrder.nativeOrder());
+            VectorMask<Byte> differs = a.compare(VectorOperators.NE, b);
+            if (differs.anyTrue()) {
+                return i + differs.firstTrue();
+            }
+        }
+        int tail = SCALAR.mismatch(buffer, offsetA + i, offsetB + i, length - i);
+        return tail < 0 ? -1 : i + tail;
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.vectorBitSize() + " bit)";
+    }
+}
@@ -0,0 +1,145 @@
+package ru.aapykhin.lab2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AdaptiveExternalSort implements ExternalSorter {
+
+    private static final int SAMPLE_BYTES = 64 * 1024;
+    private static final int RECORD_OVERHEAD = 48;
+    private static final long MIN_RUN_SIZE = 1024 * 1024;
+    private static final int MIN_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_FAN_IN = 256;
+
+    private SortPlan lastPlan;
+
+    @Override
+    public String getName() {
+        return "AdaptiveExternalSort (Planner)";
+    }
+
+    public SortPlan getLastPlan() {
+        return lastPlan;
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException {
+        SortPlan plan = explain(inputFile, maxMemoryBytes);
+        lastPlan = plan;
+
+        if (plan.getStrategy() == SortPlan.Strategy.IN_MEMORY) {
+            sortInMemory(inputFile, outputFile, plan.getBufferSize());
+        } else {
+            new ExternalSortV2(plan.getThreads(), plan.getBufferSize(), plan.getMergeFanIn())
+                    .sort(inputFile, outputFile, maxMemoryBytes);
+        }
+    }
+
+    public SortPlan explain(Path inputFile, long maxMemoryBytes) throws IOException {
+        long inputSize = Files.size(inputFile);
+        long estimatedRecords = estimateRecords(inputFile, inputSize);
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<String> reasons = new ArrayList<>();
+
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        long inMemoryBytes = inputSize + estimatedRecords * RECORD_OVERHEAD;
+
+        if (inMemoryBytes <= maxMemoryBytes && inMemoryBytes <= freeHeap / 2) {
+            reasons.add("whole input needs ~" + inMemoryBytes + " bytes in memory, within budget "
+                    + maxMemoryBytes + " and half of free heap " + freeHeap);
+            reasons.add("sorting with Arrays.parallelSort, no temp files");
+            int bufferSize = (int) clamp(inputSize, MIN_BUFFER_SIZE, MAX_BUFFER_SIZE);
+            return new SortPlan(SortPlan.Strategy.IN_MEMORY, inputSize, estimatedRecords, cores, bufferSize,
+                    inputSize, 1, 1, reasons);
+        }
+        reasons.add("whole input needs ~" + inMemoryBytes + " bytes in memory, over budget "
+                + Math.min(maxMemoryBytes, freeHeap / 2));
+
+        int threads = (int) clamp(ceilDiv(inputSize, MIN_RUN_SIZE), 1, cores);
+        reasons.add(threads + " of " + cores + " cores, at most one per " + MIN_RUN_SIZE + " bytes of input");
+
+        long estimatedRuns = ceilDiv(inputSize, Math.max(1, maxMemoryBytes / (threads + 1)));
+        int bufferSize = (int) clamp(maxMemoryBytes / (estimatedRuns + 1), MIN_BUFFER_SIZE, MAX_BUFFER_SIZE);
+        int maxFanIn = (int) clamp(maxMemoryBytes / bufferSize - 1, 2, MAX_FAN_IN);
+        reasons.add("merge buffers of " + bufferSize + " bytes allow a fan-in of " + maxFanIn);
+
+        long mergeReserve = ExternalSortV2.mergeReserve(maxMemoryBytes, maxFanIn, bufferSize);
+        long runSize = Math.max(1, (maxMemoryBytes - mergeReserve) / (threads + 1));
+        estimatedRuns = ceilDiv(inputSize, runSize);
+        reasons.add("run size " + runSize + " so that " + (threads + 1) + " chunk arenas and " + mergeReserve
+                + " bytes of background merge buffers fit the budget, ~" + estimatedRuns + " runs");
+
+        if (estimatedRuns < maxFanIn) {
+            reasons.add("all runs fit into a single final merge");
+            return new SortPlan(SortPlan.Strategy.SINGLE_MERGE, inputSize, estimatedRecords, threads, bufferSize,
+                    runSize, estimatedRuns, maxFanIn, reasons);
+        }
+
+        reasons.add("runs exceed the fan-in, merging in background passes of " + maxFanIn);
+        return new SortPlan(SortPlan.Strategy.MULTI_PASS, inputSize, estimatedRecords, threads, bufferSize,
+                runSize, estimatedRuns, maxFanIn, reasons);
+    }
+
+    private long estimateRecords(Path inputFile, long inputSize) throws IOException {
+        if (inputSize == 0) {
+            return 0;
+        }
+
+        byte[] sample = new byte[(int) Math.min(SAMPLE_BYTES, inputSize)];
+        int read;
+        try (InputStream in = Files.newInputStream(inputFile)) {
+            read = in.readNBytes(sample, 0, sample.length);
+        }
+
+        long lines = 0;
+        for (int i = 0; i < read; i++) {
+            if (sample[i] == '\n') {
+                lines++;
+            }
+        }
+        if (lines == 0) {
+            return 1;
+        }
+        return Math.max(1, inputSize * lines / read);
+    }
+
+    private void sortInMemory(Path inputFile, Path outputFile, int bufferSize) throws IOException {
+        List<byte[]> lines = new ArrayList<>();
+        try (ByteLineReader reader = new ByteLineReader(Files.newInputStream(inputFile), bufferSize)) {
+            while (reader.advance()) {
+                int length = reader.length;
+                if (length > 0 && reader.line[length - 1] == '\r') {
+                    length--;
+                }
+                lines.add(Arrays.copyOf(reader.line, length));
+            }
+        }
+
+        byte[][] sorted = lines.toArray(new byte[0][]);
+        Arrays.parallelSort(sorted, Arrays::compareUnsigned);
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile), bufferSize)) {
+            for (byte[] line : sorted) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
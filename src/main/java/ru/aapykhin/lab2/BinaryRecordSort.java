@@ -0,0 +1,409 @@
+package ru.aapykhin.lab2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BinaryRecordSort implements ExternalSorter {
+
+    private static final int IO_BUFFER_SIZE = 1024 * 1024;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int INDEX_BYTES_PER_RECORD = 2 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int DEFAULT_MERGE_FAN_IN = 16;
+
+    private final int recordSize;
+    private final int keySize;
+    private final int mergeFanIn;
+
+    private Path tempDir;
+
+    private ByteBuffer chunkBuffer;
+    private ByteBuffer outBuffer;
+    private long[] keys;
+    private long[] keysTmp;
+    private int[] order;
+    private int[] orderTmp;
+
+    public BinaryRecordSort(int recordSize) {
+        this(recordSize, Long.BYTES);
+    }
+
+    public BinaryRecordSort(int recordSize, int keySize) {
+        this(recordSize, keySize, DEFAULT_MERGE_FAN_IN);
+    }
+
+    public BinaryRecordSort(int recordSize, int keySize, int mergeFanIn) {
+        if (keySize != Long.BYTES && keySize != Integer.BYTES) {
+            throw new IllegalArgumentException("Key size must be 4 or 8 bytes: " + keySize);
+        }
+        if (recordSize < keySize) {
+            throw new IllegalArgumentException("Record size " + recordSize + " is smaller than key size " + keySize);
+        }
+        if (mergeFanIn < 2) {
+            throw new IllegalArgumentException("Merge fan-in must be at least 2: " + mergeFanIn);
+        }
+        this.recordSize = recordSize;
+        this.keySize = keySize;
+        this.mergeFanIn = mergeFanIn;
+    }
+
+    @Override
+    public String getName() {
+        return "BinaryRecordSort (" + recordSize + "-byte records, " + keySize + "-byte key)";
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException {
+        long inputSize = Files.size(inputFile);
+        if (inputSize % recordSize != 0) {
+            throw new IOException("Input size " + inputSize + " is not a multiple of record size " + recordSize);
+        }
+
+        tempDir = Files.createTempDirectory("binary_record_sort_");
+
+        try {
+            allocateChunk(maxMemoryBytes, inputSize / recordSize);
+            List<Path> runs = splitAndSort(inputFile, outputFile, inputSize);
+            if (runs.size() > 1) {
+                mergeRuns(runs, outputFile, maxMemoryBytes);
+            }
+        } finally {
+            releaseChunk();
+            outBuffer = null;
+            cleanup();
+        }
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes, SortOptions options)
+            throws IOException {
+        if (!options.isIdentity()) {
+            throw new IllegalArgumentException("Line filters and projections do not apply to binary records");
+        }
+        sort(inputFile, outputFile, maxMemoryBytes);
+    }
+
+    private void allocateChunk(long maxMemoryBytes, long totalRecords) {
+        long budgetRecords = maxMemoryBytes / (recordSize + INDEX_BYTES_PER_RECORD);
+        long maxRecords = Integer.MAX_VALUE / recordSize;
+        int capacity = (int) Math.max(1, Math.min(Math.min(budgetRecords, maxRecords), Math.max(1, totalRecords)));
+
+        chunkBuffer = ByteBuffer.allocateDirect(capacity * recordSize);
+        keys = new long[capacity];
+        keysTmp = new long[capacity];
+        order = new int[capacity];
+        orderTmp = new int[capacity];
+        outBuffer = ByteBuffer.allocateDirect(Math.max(1, IO_BUFFER_SIZE / recordSize) * recordSize);
+    }
+
+    private void releaseChunk() {
+        chunkBuffer = null;
+        keys = null;
+        keysTmp = null;
+        order = null;
+        orderTmp = null;
+    }
+
+    private List<Path> splitAndSort(Path inputFile, Path outputFile, long inputSize) throws IOException {
+        List<Path> runs = new ArrayList<>();
+
+        if (inputSize == 0) {
+            Files.deleteIfExists(outputFile);
+            Files.createFile(outputFile);
+            return runs;
+        }
+
+        boolean singleRun = inputSize <= chunkBuffer.capacity();
+
+        try (FileChannel in = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            int runIndex = 0;
+            while (true) {
+                chunkBuffer.clear();
+                readFully(in, chunkBuffer);
+                int count = chunkBuffer.position() / recordSize;
+                if (count == 0) {
+                    break;
+                }
+
+                Path runFile = singleRun ? outputFile : tempDir.resolve("run_" + runIndex++ + ".bin");
+                sortChunk(count);
+                writeRun(count, runFile);
+                runs.add(runFile);
+            }
+        }
+
+        return runs;
+    }
+
+    private void sortChunk(int count) {
+        long bias = keySize == Long.BYTES ? Long.MIN_VALUE : Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            keys[i] = readKey(chunkBuffer, i * recordSize) - bias;
+            order[i] = i;
+        }
+
+        long[] srcKeys = keys;
+        long[] dstKeys = keysTmp;
+        int[] srcOrder = order;
+        int[] dstOrder = orderTmp;
+        int[] counts = new int[RADIX];
+
+        for (int shift = 0; shift < keySize * 8; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[(int) (srcKeys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if (counts[(int) (srcKeys[0] >>> shift) & (RADIX - 1)] == count) {
+                continue;
+            }
+
+            int sum = 0;
+            for (int b = 0; b < RADIX; b++) {
+                int c = counts[b];
+                counts[b] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < count; i++) {
+                int bucket = (int) (srcKeys[i] >>> shift) & (RADIX - 1);
+                int pos = counts[bucket]++;
+                dstKeys[pos] = srcKeys[i];
+                dstOrder[pos] = srcOrder[i];
+            }
+
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapOrder = srcOrder;
+            srcOrder = dstOrder;
+            dstOrder = swapOrder;
+        }
+
+        if (srcOrder != order) {
+            System.arraycopy(srcOrder, 0, order, 0, count);
+        }
+    }
+
+    private void writeRun(int count, Path runFile) throws IOException {
+        ByteBuffer out = outBuffer;
+        out.clear();
+
+        try (FileChannel channel = FileChannel.open(runFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < count; i++) {
+                if (out.remaining() < recordSize) {
+                    flush(out, channel);
+                }
+                out.put(out.position(), chunkBuffer, order[i] * recordSize, recordSize);
+                out.position(out.position() + recordSize);
+            }
+            flush(out, channel);
+        }
+    }
+
+    private void mergeRuns(List<Path> runs, Path outputFile, long maxMemoryBytes) throws IOException {
+        releaseChunk();
+
+        int fanIn = Math.min(runs.size(), mergeFanIn);
+        long perRun = maxMemoryBytes / (fanIn + 1);
+        int bufferRecords = (int) Math.max(1, Math.min(perRun, IO_BUFFER_SIZE) / recordSize);
+        ByteBuffer[] readBuffers = new ByteBuffer[fanIn];
+        for (int i = 0; i < fanIn; i++) {
+            readBuffers[i] = ByteBuffer.allocateDirect(bufferRecords * recordSize);
+        }
+
+        int pass = 0;
+        while (runs.size() > mergeFanIn) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += mergeFanIn) {
+                List<Path> batch = runs.subList(from, Math.min(runs.size(), from + mergeFanIn));
+                if (batch.size() == 1) {
+                    merged.add(batch.get(0));
+                    continue;
+                }
+                Path mergedFile = tempDir.resolve("merge_" + pass + "_" + merged.size() + ".bin");
+                mergeBatch(batch, mergedFile, readBuffers);
+                for (Path run : batch) {
+                    Files.delete(run);
+                }
+                merged.add(mergedFile);
+            }
+            runs = merged;
+            pass++;
+        }
+        mergeBatch(runs, outputFile, readBuffers);
+    }
+
+    private void mergeBatch(List<Path> runs, Path outputFile, ByteBuffer[] readBuffers) throws IOException {
+        int k = runs.size();
+        if (k == 1) {
+            Files.move(runs.get(0), outputFile, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        RunReader[] readers = new RunReader[k];
+        try {
+            for (int i = 0; i < k; i++) {
+                readBuffers[i].clear();
+                readers[i] = new RunReader(FileChannel.open(runs.get(i), StandardOpenOption.READ), readBuffers[i]);
+                readers[i].advance();
+            }
+
+            LoserTree tree = new LoserTree(readers);
+            ByteBuffer out = outBuffer;
+            out.clear();
+
+            try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (true) {
+                    int winner = tree.winner();
+                    RunReader reader = readers[winner];
+                    if (reader.exhausted) {
+                        break;
+                    }
+                    if (out.remaining() < recordSize) {
+                        flush(out, channel);
+                    }
+                    out.put(out.position(), reader.buffer, reader.position, recordSize);
+                    out.position(out.position() + recordSize);
+
+                    reader.advance();
+                    tree.replay(winner);
+                }
+                flush(out, channel);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                if (reader != null) {
+                    try {
+                        reader.channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    private long readKey(ByteBuffer buffer, int offset) {
+        return keySize == Long.BYTES ? buffer.getLong(offset) : buffer.getInt(offset);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private class RunReader {
+        final FileChannel channel;
+        final ByteBuffer buffer;
+        int position;
+        long key;
+        boolean exhausted;
+
+        RunReader(FileChannel channel, ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.buffer.flip();
+            this.position = -recordSize;
+        }
+
+        void advance() throws IOException {
+            position += recordSize;
+            if (position >= buffer.limit()) {
+                buffer.clear();
+                readFully(channel, buffer);
+                buffer.flip();
+                position = 0;
+                if (buffer.limit() < recordSize) {
+                    exhausted = true;
+                    return;
+                }
+            }
+            key = readKey(buffer, position);
+        }
+    }
+
+    private static class LoserTree {
+        private final RunReader[] readers;
+        private final int[] tree;
+        private final int k;
+
+        LoserTree(RunReader[] readers) {
+            this.readers = readers;
+            this.k = readers.length;
+            this.tree = new int[k];
+            Arrays.fill(tree, k);
+            for (int i = k - 1; i >= 0; i--) {
+                replay(i);
+            }
+        }
+
+        int winner() {
+            return tree[0];
+        }
+
+        void replay(int run) {
+            int winner = run;
+            for (int node = (run + k) >>> 1; node > 0; node >>>= 1) {
+                if (beats(tree[node], winner)) {
+                    int loser = winner;
+                    winner = tree[node];
+                    tree[node] = loser;
+                }
+            }
+            tree[0] = winner;
+        }
+
+        private boolean beats(int a, int b) {
+            if (a == k) {
+                return true;
+            }
+            if (b == k) {
+                return false;
+            }
+            RunReader ra = readers[a];
+            RunReader rb = readers[b];
+            if (ra.exhausted) {
+                return false;
+            }
+            if (rb.exhausted) {
+                return true;
+            }
+            return ra.key < rb.key || (ra.key == rb.key && a < b);
+        }
+    }
+
+    private void cleanup() {
+        if (tempDir != null) {
+            try {
+                Files.walk(tempDir)
+                        .sorted((a, b) -> -a.compareTo(b))
+                        .forEach(path -> {
+                            try {
+                                Files.deleteIfExists(path);
+                            } catch (IOException ignored) {
+                            }
+                        });
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.aapykhin.lab2;
+
+import java.nio.ByteBuffer;
+
+public interface ByteKernels {
+
+    String VECTOR_PROPERTY = "externalsort.vector";
+    String VECTOR_IMPLEMENTATION = "ru.aapykhin.lab2.VectorByteKernels";
+
+    int indexOf(ByteBuffer buffer, int from, int to, byte value);
+
+    int mismatch(ByteBuffer buffer, int offsetA, int offsetB, int length);
+
+    String getName();
+
+    static ByteKernels get() {
+        return ByteKernelsHolder.INSTANCE;
+    }
+
+    static ByteKernels scalar() {
+        return ScalarByteKernels.INSTANCE;
+    }
+
+    static ByteKernels load(boolean preferVector) {
+        if (preferVector) {
+            try {
+                return (ByteKernels) Class.forName(VECTOR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return scalar();
+            }
+        }
+        return scalar();
+    }
+}
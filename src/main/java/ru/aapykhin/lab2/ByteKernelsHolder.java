@@ -0,0 +1,10 @@
+package ru.aapykhin.lab2;
+
+final class ByteKernelsHolder {
+
+    static final ByteKernels INSTANCE =
+            ByteKernels.load(!"false".equalsIgnoreCase(System.getProperty(ByteKernels.VECTOR_PROPERTY)));
+
+    private ByteKernelsHolder() {
+    }
+}
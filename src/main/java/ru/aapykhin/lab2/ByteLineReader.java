@@ -0,0 +1,60 @@
+package ru.aapykhin.lab2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+class ByteLineReader implements Closeable {
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    byte[] line = new byte[256];
+    int length;
+
+    ByteLineReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    boolean advance() throws IOException {
+        length = 0;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return length > 0;
+                }
+            }
+
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            append(start, position - start);
+
+            if (position < limit) {
+                position++;
+                return true;
+            }
+        }
+    }
+
+    private void append(int start, int count) {
+        if (length + count > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        }
+        System.arraycopy(buffer, start, line, length, count);
+        length += count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,306 @@
+package ru.aapykhin.lab2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+class ChunkArena {
+
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final ByteKernels KERNELS = ByteKernels.get();
+
+    private ByteBuffer data;
+    private final ByteBuffer output;
+
+    private long[] refs = new long[INITIAL_INDEX_CAPACITY];
+    private long[] prefixes = new long[INITIAL_INDEX_CAPACITY];
+    private int count;
+
+    private byte[] lineScratch = new byte[256];
+    private byte[] projectScratch = new byte[256];
+    private int filled;
+
+    ChunkArena(int capacity, int outputBufferSize) {
+        this.data = ByteBuffer.allocateDirect(capacity);
+        this.output = ByteBuffer.allocateDirect(outputBufferSize);
+    }
+
+    ByteBuffer buffer() {
+        return data;
+    }
+
+    int size() {
+        return count;
+    }
+
+    void grow(int minCapacity) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(minCapacity, data.capacity()));
+        grown.put(0, data, 0, data.position());
+        grown.position(data.position());
+        data = grown;
+    }
+
+    void addRecord(int offset, int length) {
+        if (count == refs.length) {
+            refs = Arrays.copyOf(refs, count * 2);
+            prefixes = Arrays.copyOf(prefixes, count * 2);
+        }
+        refs[count++] = ((long) offset << 32) | length;
+    }
+
+    void addLine(int start, int end) {
+        if (end > start && data.get(end - 1) == '\r') {
+            end--;
+        }
+        addRecord(start, end - start);
+    }
+
+    int addLines(int lineStart, int from, int to) {
+        int newline;
+        while ((newline = KERNELS.indexOf(data, from, to, (byte) '\n')) >= 0) {
+            addLine(lineStart, newline);
+            lineStart = newline + 1;
+            from = lineStart;
+        }
+        return lineStart;
+    }
+
+    int addLines(int lineStart, int from, int to, SortOptions options) {
+        if (options.isIdentity()) {
+            return addLines(lineStart, from, to);
+        }
+
+        int newline;
+        while ((newline = KERNELS.indexOf(data, from, to, (byte) '\n')) >= 0) {
+            addFilteredLine(lineStart, newline, options);
+            lineStart = newline + 1;
+            from = lineStart;
+        }
+
+        if (lineStart > filled) {
+            int partial = to - lineStart;
+            data.put(filled, data, lineStart, partial);
+            data.position(filled + partial);
+            lineStart = filled;
+        }
+        return lineStart;
+    }
+
+    void addLastLine(int start, int end, SortOptions options) {
+        if (options.isIdentity()) {
+            addLine(start, end);
+        } else {
+            addFilteredLine(start, end, options);
+        }
+    }
+
+    private void addFilteredLine(int start, int end, SortOptions options) {
+        if (end > start && data.get(end - 1) == '\r') {
+            end--;
+        }
+        int length = end - start;
+        if (lineScratch.length < length) {
+            lineScratch = new byte[Math.max(length, lineScratch.length * 2)];
+            projectScratch = new byte[lineScratch.length];
+        }
+
+        data.get(start, lineScratch, 0, length);
+        if (!options.accepts(lineScratch, length)) {
+            return;
+        }
+
+        int projected = options.project(lineScratch, length, projectScratch);
+        data.put(filled, projectScratch, 0, projected);
+        addRecord(filled, projected);
+        filled += projected;
+    }
+
+    void indexLines() {
+        int end = data.position();
+        int start = addLines(0, 0, end);
+        if (start < end) {
+            addLine(start, end);
+        }
+    }
+
+    void reset() {
+        data.clear();
+        count = 0;
+        filled = 0;
+    }
+
+    void compact(int from) {
+        data.limit(data.position()).position(from);
+        data.compact();
+        count = 0;
+        filled = 0;
+    }
+
+    void sort() {
+        for (int i = 0; i < count; i++) {
+            prefixes[i] = prefixOf(refs[i]);
+        }
+        quickSort(0, count - 1);
+    }
+
+    void writeTo(FileChannel channel) throws IOException {
+        writeTo(channel, null);
+    }
+
+    void writeTo(FileChannel channel, CRC32 checksum) throws IOException {
+        output.clear();
+        for (int i = 0; i < count; i++) {
+            int offset = offsetOf(refs[i]);
+            int length = lengthOf(refs[i]);
+
+            if (output.remaining() < length + 1) {
+                flush(channel, checksum);
+                if (output.remaining() < length + 1) {
+                    ByteBuffer record = data.duplicate();
+                    record.limit(offset + length).position(offset);
+                    if (checksum != null) {
+                        checksum.update(record.duplicate());
+                    }
+                    while (record.hasRemaining()) {
+                        channel.write(record);
+                    }
+                    output.put((byte) '\n');
+                    continue;
+                }
+            }
+
+            output.put(output.position(), data, offset, length);
+            output.position(output.position() + length);
+            output.put((byte) '\n');
+        }
+        flush(channel, checksum);
+    }
+
+    private void flush(FileChannel channel, CRC32 checksum) throws IOException {
+        output.flip();
+        if (checksum != null) {
+            checksum.update(output.duplicate());
+        }
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+        output.clear();
+    }
+
+    private long prefixOf(long ref) {
+        int offset = offsetOf(ref);
+        int length = lengthOf(ref);
+        if (length >= Long.BYTES) {
+            return data.getLong(offset);
+        }
+        long prefix = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            prefix <<= 8;
+            if (i < length) {
+                prefix |= data.get(offset + i) & 0xFF;
+            }
+        }
+        return prefix;
+    }
+
+    private int compare(long prefixA, long refA, long prefixB, long refB) {
+        int result = Long.compareUnsigned(prefixA, prefixB);
+        if (result != 0) {
+            return result;
+        }
+
+        int offsetA = offsetOf(refA);
+        int offsetB = offsetOf(refB);
+        int lengthA = lengthOf(refA);
+        int lengthB = lengthOf(refB);
+        int common = Math.min(lengthA, lengthB);
+
+        int skip = Math.min(Long.BYTES, common);
+        int mismatch = KERNELS.mismatch(data, offsetA + skip, offsetB + skip, common - skip);
+        if (mismatch < 0) {
+            return Integer.compare(lengthA, lengthB);
+        }
+        int at = skip + mismatch;
+        return Integer.compare(data.get(offsetA + at) & 0xFF, data.get(offsetB + at) & 0xFF);
+    }
+
+    private int compareAt(int i, int j) {
+        return compare(prefixes[i], refs[i], prefixes[j], refs[j]);
+    }
+
+    private void quickSort(int lo, int hi) {
+        while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            if (compareAt(mid, lo) < 0) {
+                swap(mid, lo);
+            }
+            if (compareAt(hi, lo) < 0) {
+                swap(hi, lo);
+            }
+            if (compareAt(hi, mid) < 0) {
+                swap(hi, mid);
+            }
+
+            long pivotPrefix = prefixes[mid];
+            long pivotRef = refs[mid];
+            int i = lo - 1;
+            int j = hi + 1;
+            while (true) {
+                do {
+                    i++;
+                } while (compare(prefixes[i], refs[i], pivotPrefix, pivotRef) < 0);
+                do {
+                    j--;
+                } while (compare(prefixes[j], refs[j], pivotPrefix, pivotRef) > 0);
+                if (i >= j) {
+                    break;
+                }
+                swap(i, j);
+            }
+
+            if (j - lo < hi - j) {
+                quickSort(lo, j);
+                lo = j + 1;
+            } else {
+                quickSort(j + 1, hi);
+                hi = j;
+            }
+        }
+        insertionSort(lo, hi);
+    }
+
+    private void insertionSort(int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            long prefix = prefixes[i];
+            long ref = refs[i];
+            int j = i - 1;
+            while (j >= lo && compare(prefixes[j], refs[j], prefix, ref) > 0) {
+                prefixes[j + 1] = prefixes[j];
+                refs[j + 1] = refs[j];
+                j--;
+            }
+            prefixes[j + 1] = prefix;
+            refs[j + 1] = ref;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long prefix = prefixes[i];
+        prefixes[i] = prefixes[j];
+        prefixes[j] = prefix;
+        long ref = refs[i];
+        refs[i] = refs[j];
+        refs[j] = ref;
+    }
+
+    private static int offsetOf(long ref) {
+        return (int) (ref >>> 32);
+    }
+
+    private static int lengthOf(long ref) {
+        return (int) ref;
+    }
+}
@@ -0,0 +1,229 @@
+package ru.aapykhin.lab2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class DictionarySort implements ExternalSorter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int ENTRY_OVERHEAD = 3 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ExternalSorter fallback;
+
+    private byte[] pool;
+    private int poolSize;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] hashes;
+    private long[] counts;
+    private int size;
+    private int[] table;
+    private long budget;
+
+    private boolean fallbackUsed;
+
+    public DictionarySort() {
+        this(new ExternalSortV2());
+    }
+
+    public DictionarySort(ExternalSorter fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() {
+        return "DictionarySort (Low-cardinality, fallback: " + fallback.getName() + ")";
+    }
+
+    public boolean isFallbackUsed() {
+        return fallbackUsed;
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException {
+        fallbackUsed = false;
+        budget = Math.min(maxMemoryBytes, MAX_ARRAY_SIZE);
+        allocate();
+
+        try {
+            if (footprint(pool.length, offsets.length, table.length) <= budget && buildDictionary(inputFile)) {
+                writeExpanded(outputFile);
+                return;
+            }
+        } finally {
+            release();
+        }
+
+        fallbackUsed = true;
+        Files.deleteIfExists(outputFile);
+        fallback.sort(inputFile, outputFile, maxMemoryBytes);
+    }
+
+    private boolean buildDictionary(Path inputFile) throws IOException {
+        try (ByteLineReader reader = new ByteLineReader(Files.newInputStream(inputFile), BUFFER_SIZE)) {
+            while (reader.advance()) {
+                int length = reader.length;
+                if (length > 0 && reader.line[length - 1] == '\r') {
+                    length--;
+                }
+                if (!add(reader.line, length)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean add(byte[] line, int length) {
+        int hash = hash(line, length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                id = insert(line, length, hash);
+                if (id < 0) {
+                    return false;
+                }
+                table[slot] = id + 1;
+                if (size * 2 > table.length) {
+                    if (footprint(pool.length, offsets.length, table.length * 2L) > budget) {
+                        return false;
+                    }
+                    rehash();
+                }
+                return true;
+            }
+            if (hashes[id] == hash && lengths[id] == length
+                    && Arrays.equals(pool, offsets[id], offsets[id] + length, line, 0, length)) {
+                counts[id]++;
+                return true;
+            }
+        }
+    }
+
+    private int insert(byte[] line, int length, int hash) {
+        if (size == offsets.length) {
+            long capacity = size * 2L;
+            if (footprint(pool.length, capacity, table.length) > budget) {
+                return -1;
+            }
+            offsets = Arrays.copyOf(offsets, (int) capacity);
+            lengths = Arrays.copyOf(lengths, (int) capacity);
+            hashes = Arrays.copyOf(hashes, (int) capacity);
+            counts = Arrays.copyOf(counts, (int) capacity);
+        }
+        long required = (long) poolSize + length;
+        if (required > pool.length) {
+            long available = budget - footprint(0, offsets.length, table.length);
+            long capacity = Math.min(Math.max(pool.length * 2L, required), available);
+            if (capacity < required) {
+                return -1;
+            }
+            pool = Arrays.copyOf(pool, (int) capacity);
+        }
+        System.arraycopy(line, 0, pool, poolSize, length);
+
+        offsets[size] = poolSize;
+        lengths[size] = length;
+        hashes[size] = hash;
+        counts[size] = 1;
+        poolSize += length;
+        return size++;
+    }
+
+    private void rehash() {
+        int[] grown = new int[table.length * 2];
+        int mask = grown.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown[slot] = id + 1;
+        }
+        table = grown;
+    }
+
+    private void writeExpanded(Path outputFile) throws IOException {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size);
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile), BUFFER_SIZE)) {
+            for (int id : order) {
+                for (long c = counts[id]; c > 0; c--) {
+                    out.write(pool, offsets[id], lengths[id]);
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    private void mergeSort(int[] ids, int[] tmp, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(ids, tmp, from, mid);
+        mergeSort(ids, tmp, mid, to);
+        if (compare(ids[mid - 1], ids[mid]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(ids, from, tmp, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && compare(tmp[i], tmp[j]) <= 0)) {
+                ids[k] = tmp[i++];
+            } else {
+                ids[k] = tmp[j++];
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        return Arrays.compareUnsigned(pool, offsets[a], offsets[a] + lengths[a],
+                pool, offsets[b], offsets[b] + lengths[b]);
+    }
+
+    private static long footprint(long poolCapacity, long entryCapacity, long tableCapacity) {
+        return poolCapacity + entryCapacity * ENTRY_OVERHEAD + tableCapacity * Integer.BYTES;
+    }
+
+    private static int hash(byte[] line, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + line[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate() {
+        pool = new byte[INITIAL_CAPACITY * 16];
+        poolSize = 0;
+        offsets = new int[INITIAL_CAPACITY];
+        lengths = new int[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        counts = new long[INITIAL_CAPACITY];
+        table = new int[INITIAL_CAPACITY * 2];
+        size = 0;
+    }
+
+    private void release() {
+        pool = null;
+        offsets = null;
+        lengths = null;
+        hashes = null;
+        counts = null;
+        table = null;
+    }
+}
@@ -0,0 +1,307 @@
+package ru.aapykhin.lab2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+public class DistributionSort implements ExternalSorter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUCKET_BUFFER_SIZE = 16 * 1024;
+    private static final int SAMPLES_PER_BUCKET = 32;
+    private static final int MAX_SPLITTERS = 127;
+    private static final int MAX_DEPTH = 4;
+    private static final int MERGE_FAN_IN = 16;
+    private static final int MAX_ARENA_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private final Random random = new Random(42);
+    private final int threads;
+
+    private Path tempDir;
+    private ExecutorService executor;
+    private BlockingQueue<ChunkArena> freeArenas;
+    private int maxArenas;
+    private int createdArenas;
+    private long bucketBudget;
+    private int bucketCounter;
+
+    public DistributionSort() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public DistributionSort(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    @Override
+    public String getName() {
+        return "DistributionSort (Bucket)";
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException {
+        tempDir = Files.createTempDirectory("distribution_sort_");
+        executor = Executors.newFixedThreadPool(threads);
+        maxArenas = threads;
+        createdArenas = 0;
+        freeArenas = new ArrayBlockingQueue<>(maxArenas);
+        bucketBudget = Math.max(1, Math.min(maxMemoryBytes / threads, MAX_ARENA_CAPACITY - 1));
+        bucketCounter = 0;
+
+        try {
+            List<Bucket> buckets = new ArrayList<>();
+            long inputSize = Files.size(inputFile);
+            if (inputSize > 0) {
+                partition(inputFile, inputSize, 0, false, buckets);
+            }
+
+            List<Future<Path>> sortedBuckets = new ArrayList<>();
+            for (Bucket bucket : buckets) {
+                sortedBuckets.add(executor.submit(() -> sortBucket(bucket)));
+            }
+
+            concatenate(sortedBuckets, outputFile);
+        } finally {
+            cleanup();
+        }
+    }
+
+    private void partition(Path file, long size, int depth, boolean owned, List<Bucket> buckets) throws IOException {
+        if (size <= bucketBudget) {
+            buckets.add(new Bucket(file, size, BucketKind.SORT_IN_MEMORY));
+            return;
+        }
+
+        int splitterCount = (int) Math.min(MAX_SPLITTERS, Math.max(1, 2 * (size / bucketBudget) + 1));
+        byte[][] splitters = depth < MAX_DEPTH ? chooseSplitters(file, size, splitterCount) : new byte[0][];
+        if (splitters.length == 0) {
+            buckets.add(new Bucket(file, size, BucketKind.SORT_EXTERNAL));
+            return;
+        }
+
+        Path[] bucketFiles = new Path[2 * splitters.length + 1];
+        long[] bucketSizes = new long[bucketFiles.length];
+        scatter(file, splitters, bucketFiles, bucketSizes);
+        if (owned) {
+            Files.delete(file);
+        }
+
+        for (int i = 0; i < bucketFiles.length; i++) {
+            if (bucketFiles[i] == null) {
+                continue;
+            }
+            if (i % 2 == 1) {
+                buckets.add(new Bucket(bucketFiles[i], bucketSizes[i], BucketKind.SORTED));
+            } else if (bucketSizes[i] >= size) {
+                buckets.add(new Bucket(bucketFiles[i], bucketSizes[i], BucketKind.SORT_EXTERNAL));
+            } else {
+                partition(bucketFiles[i], bucketSizes[i], depth + 1, true, buckets);
+            }
+        }
+    }
+
+    private byte[][] chooseSplitters(Path file, long size, int splitterCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<byte[]> samples = LineSampler.sample(channel, 0, size,
+                    (splitterCount + 1) * SAMPLES_PER_BUCKET, random);
+            return LineSampler.chooseSplitters(samples, splitterCount + 1);
+        }
+    }
+
+    private void scatter(Path file, byte[][] splitters, Path[] bucketFiles, long[] bucketSizes) throws IOException {
+        OutputStream[] writers = new OutputStream[bucketFiles.length];
+
+        try (ByteLineReader reader = new ByteLineReader(Files.newInputStream(file), BUFFER_SIZE)) {
+            while (reader.advance()) {
+                int length = reader.length;
+                if (length > 0 && reader.line[length - 1] == '\r') {
+                    length--;
+                }
+
+                int bucket = findBucket(splitters, reader.line, length);
+                if (writers[bucket] == null) {
+                    bucketFiles[bucket] = tempDir.resolve("bucket_" + bucketCounter++ + ".tmp");
+                    writers[bucket] = new BufferedOutputStream(
+                            Files.newOutputStream(bucketFiles[bucket]), BUCKET_BUFFER_SIZE);
+                }
+                writers[bucket].write(reader.line, 0, length);
+                writers[bucket].write('\n');
+                bucketSizes[bucket] += length + 1;
+            }
+        } finally {
+            IOException failure = null;
+            for (OutputStream writer : writers) {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static int findBucket(byte[][] splitters, byte[] line, int length) {
+        int lo = 0;
+        int hi = splitters.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Arrays.compareUnsigned(splitters[mid], 0, splitters[mid].length, line, 0, length);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return 2 * mid + 1;
+            }
+        }
+        return 2 * lo;
+    }
+
+    private Path sortBucket(Bucket bucket) throws IOException {
+        if (bucket.kind == BucketKind.SORTED) {
+            return bucket.file;
+        }
+
+        Path sortedFile = tempDir.resolve("sorted_" + bucket.file.getFileName());
+        if (bucket.kind == BucketKind.SORT_EXTERNAL) {
+            new ExternalSortV2(1, BUFFER_SIZE, MERGE_FAN_IN).sort(bucket.file, sortedFile, bucketBudget);
+            return sortedFile;
+        }
+
+        ChunkArena arena = acquireArena();
+        try {
+            if (arena.buffer().capacity() <= bucket.size) {
+                arena.grow((int) bucket.size + 1);
+            }
+            try (FileChannel channel = FileChannel.open(bucket.file, StandardOpenOption.READ)) {
+                ByteBuffer buffer = arena.buffer();
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+            }
+
+            if (bucket.file.startsWith(tempDir)) {
+                Files.delete(bucket.file);
+            }
+
+            arena.indexLines();
+            arena.sort();
+
+            try (FileChannel channel = FileChannel.open(sortedFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                arena.writeTo(channel);
+            }
+        } finally {
+            arena.reset();
+            freeArenas.offer(arena);
+        }
+        return sortedFile;
+    }
+
+    private ChunkArena acquireArena() throws IOException {
+        ChunkArena arena = freeArenas.poll();
+        if (arena != null) {
+            return arena;
+        }
+        synchronized (this) {
+            if (createdArenas < maxArenas) {
+                createdArenas++;
+                return new ChunkArena((int) bucketBudget + 1, BUFFER_SIZE);
+            }
+        }
+        try {
+            return freeArenas.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a free chunk arena", e);
+        }
+    }
+
+    private void concatenate(List<Future<Path>> sortedBuckets, Path outputFile) throws IOException {
+        try (FileChannel out = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Future<Path> future : sortedBuckets) {
+                Path sortedFile;
+                try {
+                    sortedFile = future.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IOException("Failed to sort bucket", e);
+                }
+
+                try (FileChannel in = FileChannel.open(sortedFile, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                if (sortedFile.startsWith(tempDir)) {
+                    Files.delete(sortedFile);
+                }
+            }
+        }
+    }
+
+    private enum BucketKind {
+        SORT_IN_MEMORY,
+        SORT_EXTERNAL,
+        SORTED
+    }
+
+    private static class Bucket {
+        final Path file;
+        final long size;
+        final BucketKind kind;
+
+        Bucket(Path file, long size, BucketKind kind) {
+            this.file = file;
+            this.size = size;
+            this.kind = kind;
+        }
+    }
+
+    private void cleanup() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        }
+        freeArenas = null;
+
+        if (tempDir != null) {
+            try {
+                Files.walk(tempDir)
+                        .sorted((a, b) -> -a.compareTo(b))
+                        .forEach(path -> {
+                            try {
+                                Files.deleteIfExists(path);
+                            } catch (IOException ignored) {
+                            }
+                        });
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -18,17 +18,24 @@ public class ExternalSortV1 implements ExternalSorter {
 
     @Override
     public void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException {
+        sort(inputFile, outputFile, maxMemoryBytes, SortOptions.NONE);
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes, SortOptions options)
+            throws IOException {
         tempDir = Files.createTempDirectory("external_sort_v1_");
 
         try {
-            List<Path> sortedChunks = splitAndSort(inputFile, maxMemoryBytes);
+            List<Path> sortedChunks = splitAndSort(inputFile, maxMemoryBytes, options);
             mergeChunks(sortedChunks, outputFile);
         } finally {
             cleanup();
         }
     }
 
-    private List<Path> splitAndSort(Path inputFile, long maxMemoryBytes) throws IOException {
+    private List<Path> splitAndSort(Path inputFile, long maxMemoryBytes, SortOptions options)
+            throws IOException {
         List<Path> chunks = new ArrayList<>();
         List<String> currentChunk = new ArrayList<>();
         long currentChunkSize = 0;
@@ -37,6 +44,10 @@ public class ExternalSortV1 implements ExternalSorter {
         try (BufferedReader reader = new BufferedReader(new FileReader(inputFile.toFile()))) {
             String line;
             while ((line = reader.readLine()) != null) {
+                if (!options.test(line)) {
+                    continue;
+                }
+                line = options.project(line);
                 long lineSize = estimateLineMemory(line);
 
                 if (currentChunkSize + lineSize > maxMemoryBytes && !currentChunk.isEmpty()) {
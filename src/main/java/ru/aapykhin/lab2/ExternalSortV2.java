@@ -1,17 +1,62 @@
 package ru.aapykhin.lab2;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.*;
 
 public class ExternalSortV2 implements ExternalSorter {
 
-    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MERGE_FAN_IN = 16;
+    private static final int MAX_ARENA_CAPACITY = Integer.MAX_VALUE - 8;
+    private static final int DEFAULT_OVERSIZED_LINE_BYTES = 16 * 1024 * 1024;
+    private static final int MIN_OVERSIZED_THRESHOLD = 64 * 1024;
+    private static final ByteKernels KERNELS = ByteKernels.get();
+
+    private final int threads;
+    private final int bufferSize;
+    private final int mergeFanIn;
+    private final int oversizedLineBytes;
 
     private Path tempDir;
     private ExecutorService executor;
+    private ExecutorService mergeExecutor;
+    private OverflowStore overflow;
+
+    private BlockingQueue<ChunkArena> freeArenas;
+    private int arenaCapacity;
+    private int mergeBufferSize;
+    private int createdArenas;
+
+    private final Object runLock = new Object();
+    private List<List<Path>> runsByLevel;
+    private Deque<Future<?>> backgroundMerges;
+    private int mergeCounter;
+
+    public ExternalSortV2() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BUFFER_SIZE, DEFAULT_MERGE_FAN_IN);
+    }
+
+    public ExternalSortV2(int threads, int bufferSize, int mergeFanIn) {
+        this(threads, bufferSize, mergeFanIn, DEFAULT_OVERSIZED_LINE_BYTES);
+    }
+
+    public ExternalSortV2(int threads, int bufferSize, int mergeFanIn, int oversizedLineBytes) {
+        if (threads < 1 || bufferSize < 1 || mergeFanIn < 2 || oversizedLineBytes < 1) {
+            throw new IllegalArgumentException("Invalid V2 settings: threads=" + threads
+                    + ", bufferSize=" + bufferSize + ", mergeFanIn=" + mergeFanIn
+                    + ", oversizedLineBytes=" + oversizedLineBytes);
+        }
+        this.threads = threads;
+        this.bufferSize = bufferSize;
+        this.mergeFanIn = mergeFanIn;
+        this.oversizedLineBytes = oversizedLineBytes;
+    }
 
     @Override
     public String getName() {
@@ -20,148 +65,299 @@ public class ExternalSortV2 implements ExternalSorter {
 
     @Override
     public void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException {
+        sort(inputFile, outputFile, maxMemoryBytes, SortOptions.NONE);
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes, SortOptions options)
+            throws IOException {
         tempDir = Files.createTempDirectory("external_sort_v2_");
-        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        executor = Executors.newFixedThreadPool(threads);
+        mergeExecutor = Executors.newSingleThreadExecutor();
+        runsByLevel = new ArrayList<>();
+        backgroundMerges = new ArrayDeque<>();
+        mergeCounter = 0;
+        overflow = null;
 
         try {
-            List<Path> sortedChunks = splitAndSortParallel(inputFile, maxMemoryBytes);
-            mergeChunksWithHeap(sortedChunks, outputFile);
+            List<Path> sortedChunks = splitAndSortParallel(inputFile, maxMemoryBytes, options);
+            if (overflow != null && overflow.size() > 0) {
+                mergeWithOverflow(sortedChunks, outputFile);
+            } else {
+                mergeChunksWithHeap(sortedChunks, outputFile, bufferSize);
+            }
         } finally {
             cleanup();
         }
     }
 
-    private List<Path> splitAndSortParallel(Path inputFile, long maxMemoryBytes) throws IOException {
-        List<List<String>> allChunks = new ArrayList<>();
-        List<String> currentChunk = new ArrayList<>();
-        long currentChunkSize = 0;
+    private List<Path> splitAndSortParallel(Path inputFile, long maxMemoryBytes, SortOptions options)
+            throws IOException {
+        long mergeReserve = mergeReserve(maxMemoryBytes, mergeFanIn, bufferSize);
+        mergeBufferSize = (int) Math.max(1, mergeReserve / (mergeFanIn + 1));
+        arenaCapacity = (int) Math.max(1, Math.min(Math.min((maxMemoryBytes - mergeReserve) / (threads + 1),
+                MAX_ARENA_CAPACITY), Files.size(inputFile) + 1));
+        freeArenas = new ArrayBlockingQueue<>(threads + 1);
+        createdArenas = 0;
+        int oversizedThreshold = Math.min(oversizedLineBytes, Math.max(arenaCapacity, MIN_OVERSIZED_THRESHOLD));
+
+        List<Future<Path>> futures = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            ChunkArena arena = acquireArena();
+            ByteBuffer buffer = arena.buffer();
+            int lineStart = 0;
+            int scan = 0;
 
-        try (BufferedReader reader = new BufferedReader(
-                new FileReader(inputFile.toFile()), BUFFER_SIZE)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                long lineSize = estimateLineMemory(line);
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    int partial = buffer.position() - lineStart;
+                    if (partial >= oversizedThreshold) {
+                        if (!options.isIdentity() && !options.isStreamable()) {
+                            throw new IOException("Filter or projection cannot be applied to a line longer than "
+                                    + oversizedThreshold + " bytes");
+                        }
+                        long offset = overflow().begin();
+                        ByteBuffer head = buffer.duplicate();
+                        head.limit(buffer.position()).position(lineStart);
+                        overflow.append(head);
+                        buffer.position(lineStart);
 
-                if (currentChunkSize + lineSize > maxMemoryBytes && !currentChunk.isEmpty()) {
-                    allChunks.add(currentChunk);
-                    currentChunk = new ArrayList<>();
-                    currentChunkSize = 0;
+                        if (arena.size() > 0) {
+                            ChunkArena next = acquireArena();
+                            futures.add(submitChunk(arena, futures.size()));
+                            arena = next;
+                        }
+                        boolean eof = streamOversizedLine(channel, arena, offset, options);
+                        buffer = arena.buffer();
+                        if (eof) {
+                            lineStart = 0;
+                            break;
+                        }
+                        lineStart = arena.addLines(0, 0, buffer.position(), options);
+                        scan = buffer.position();
+                        continue;
+                    }
+
+                    if (lineStart == 0) {
+                        arena.grow(buffer.capacity() * 2);
+                    } else {
+                        ChunkArena next = acquireArena();
+                        if (next.buffer().capacity() < partial) {
+                            next.grow(partial * 2);
+                        }
+                        next.buffer().put(0, buffer, lineStart, partial).position(partial);
+
+                        futures.add(submitChunk(arena, futures.size()));
+                        arena = next;
+                        lineStart = 0;
+                        scan = partial;
+                    }
+                    buffer = arena.buffer();
                 }
 
-                currentChunk.add(line);
-                currentChunkSize += lineSize;
-            }
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
 
-            if (!currentChunk.isEmpty()) {
-                allChunks.add(currentChunk);
+                lineStart = arena.addLines(lineStart, scan, buffer.position(), options);
+                scan = buffer.position();
             }
-        }
 
-        List<Future<Path>> futures = new ArrayList<>();
-        for (int i = 0; i < allChunks.size(); i++) {
-            final List<String> chunk = allChunks.get(i);
-            final int index = i;
-            futures.add(executor.submit(() -> sortAndWriteChunk(chunk, index)));
+            if (lineStart < buffer.position()) {
+                arena.addLastLine(lineStart, buffer.position(), options);
+            }
+            if (arena.size() > 0) {
+                futures.add(submitChunk(arena, futures.size()));
+            }
         }
 
-        List<Path> sortedChunks = new ArrayList<>();
         for (Future<Path> future : futures) {
             try {
-                sortedChunks.add(future.get());
+                future.get();
             } catch (InterruptedException | ExecutionException e) {
                 throw new IOException("Failed to sort chunk", e);
             }
         }
+        freeArenas = null;
+
+        awaitBackgroundMerges();
 
+        List<Path> sortedChunks = new ArrayList<>();
+        for (List<Path> level : runsByLevel) {
+            sortedChunks.addAll(level);
+        }
         return sortedChunks;
     }
 
-    private Path sortAndWriteChunk(List<String> chunk, int index) throws IOException {
-        Collections.sort(chunk);
+    private void addRun(Path run, int level) {
+        synchronized (runLock) {
+            while (runsByLevel.size() <= level) {
+                runsByLevel.add(new ArrayList<>());
+            }
+            List<Path> runs = runsByLevel.get(level);
+            runs.add(run);
 
-        Path chunkFile = tempDir.resolve("chunk_" + index + ".tmp");
-        try (BufferedWriter writer = new BufferedWriter(
-                new FileWriter(chunkFile.toFile()), BUFFER_SIZE)) {
-            for (String line : chunk) {
-                writer.write(line);
-                writer.newLine();
+            if (runs.size() >= mergeFanIn) {
+                List<Path> batch = new ArrayList<>(runs);
+                runs.clear();
+                Path merged = tempDir.resolve("merged_" + mergeCounter++ + ".tmp");
+                backgroundMerges.add(mergeExecutor.submit(() -> {
+                    mergeChunksWithHeap(batch, merged, mergeBufferSize);
+                    for (Path chunk : batch) {
+                        Files.deleteIfExists(chunk);
+                    }
+                    addRun(merged, level + 1);
+                    return null;
+                }));
             }
         }
+    }
 
-        return chunkFile;
+    private void awaitBackgroundMerges() throws IOException {
+        while (true) {
+            Future<?> merge;
+            synchronized (runLock) {
+                merge = backgroundMerges.poll();
+            }
+            if (merge == null) {
+                return;
+            }
+            try {
+                merge.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException("Failed to merge runs", e);
+            }
+        }
     }
 
-    private void mergeChunksWithHeap(List<Path> chunks, Path outputFile) throws IOException {
-        if (chunks.isEmpty()) {
-            Files.createFile(outputFile);
-            return;
+    private ChunkArena acquireArena() throws IOException {
+        ChunkArena arena = freeArenas.poll();
+        if (arena != null) {
+            return arena;
+        }
+        if (createdArenas < threads + 1) {
+            createdArenas++;
+            return new ChunkArena(arenaCapacity, bufferSize);
         }
+        try {
+            return freeArenas.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a free chunk arena", e);
+        }
+    }
 
-        if (chunks.size() == 1) {
-            Files.move(chunks.get(0), outputFile);
-            return;
+    private OverflowStore overflow() throws IOException {
+        if (overflow == null) {
+            overflow = new OverflowStore(tempDir.resolve("overflow.tmp"), bufferSize);
         }
+        return overflow;
+    }
 
-        List<BufferedReader> readers = new ArrayList<>();
-        PriorityQueue<IndexedLine> heap = new PriorityQueue<>(
-                Comparator.comparing(il -> il.line)
-        );
+    private boolean streamOversizedLine(FileChannel channel, ChunkArena arena, long offset, SortOptions options)
+            throws IOException {
+        ByteBuffer buffer = arena.buffer();
+        boolean eof = false;
+        while (true) {
+            if (channel.read(buffer) < 0) {
+                eof = true;
+                buffer.clear();
+                break;
+            }
 
-        try {
-            for (int i = 0; i < chunks.size(); i++) {
-                BufferedReader reader = new BufferedReader(
-                        new FileReader(chunks.get(i).toFile()), BUFFER_SIZE);
-                readers.add(reader);
-
-                String line = reader.readLine();
-                if (line != null) {
-                    heap.offer(new IndexedLine(line, i));
-                }
+            int newline = KERNELS.indexOf(buffer, 0, buffer.position(), (byte) '\n');
+            if (newline < 0) {
+                buffer.flip();
+                overflow.append(buffer);
+                buffer.clear();
+                continue;
             }
 
-            try (BufferedWriter writer = new BufferedWriter(
-                    new FileWriter(outputFile.toFile()), BUFFER_SIZE)) {
-                while (!heap.isEmpty()) {
-                    IndexedLine min = heap.poll();
-                    writer.write(min.line);
-                    writer.newLine();
+            ByteBuffer tail = buffer.duplicate();
+            tail.limit(newline).position(0);
+            overflow.append(tail);
+            arena.compact(newline + 1);
+            break;
+        }
 
-                    String nextLine = readers.get(min.readerIndex).readLine();
-                    if (nextLine != null) {
-                        heap.offer(new IndexedLine(nextLine, min.readerIndex));
-                    }
-                }
-            }
-        } finally {
-            for (BufferedReader reader : readers) {
-                try {
-                    reader.close();
-                } catch (IOException ignored) {
-                }
+        overflow.finish(offset);
+        if (!options.isIdentity() && !overflow.lastStartsWith(options.prefix())) {
+            overflow.discardLast();
+        }
+        return eof;
+    }
+
+    private Future<Path> submitChunk(ChunkArena arena, int index) {
+        return executor.submit(() -> {
+            try {
+                Path chunkFile = sortAndWriteChunk(arena, index);
+                addRun(chunkFile, 0);
+                return chunkFile;
+            } finally {
+                arena.reset();
+                freeArenas.offer(arena);
             }
+        });
+    }
+
+    private Path sortAndWriteChunk(ChunkArena arena, int index) throws IOException {
+        arena.sort();
+
+        Path chunkFile = tempDir.resolve("chunk_" + index + ".tmp");
+        try (FileChannel channel = FileChannel.open(chunkFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            arena.writeTo(channel);
         }
+
+        return chunkFile;
+    }
+
+    static long mergeReserve(long maxMemoryBytes, int mergeFanIn, int bufferSize) {
+        return Math.min((long) (mergeFanIn + 1) * bufferSize, maxMemoryBytes / 2);
     }
 
-    private static class IndexedLine {
-        final String line;
-        final int readerIndex;
+    private void mergeChunksWithHeap(List<Path> chunks, Path outputFile, int bufferSize) throws IOException {
+        if (chunks.isEmpty()) {
+            Files.createFile(outputFile);
+            return;
+        }
+
+        if (chunks.size() == 1) {
+            Files.move(chunks.get(0), outputFile);
+            return;
+        }
 
-        IndexedLine(String line, int readerIndex) {
-            this.line = line;
-            this.readerIndex = readerIndex;
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(outputFile), bufferSize)) {
+            RunMerger.merge(chunks, out, bufferSize);
         }
     }
 
-    private long estimateLineMemory(String line) {
-        return 40 + (long) line.length() * 2;
+    private void mergeWithOverflow(List<Path> chunks, Path outputFile) throws IOException {
+        overflow.sort();
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(outputFile), bufferSize)) {
+            RunMerger.merge(chunks, overflow, out, bufferSize);
+        }
     }
 
     private void cleanup() {
-        if (executor != null) {
-            executor.shutdown();
+        for (ExecutorService service : new ExecutorService[]{executor, mergeExecutor}) {
+            if (service != null) {
+                service.shutdown();
+                try {
+                    service.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+        freeArenas = null;
+
+        if (overflow != null) {
             try {
-                executor.awaitTermination(10, TimeUnit.SECONDS);
-            } catch (InterruptedException ignored) {
+                overflow.close();
+            } catch (IOException ignored) {
             }
         }
 
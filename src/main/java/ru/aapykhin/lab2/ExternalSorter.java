@@ -1,9 +1,25 @@
 package ru.aapykhin.lab2;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public interface ExternalSorter {
     void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException;
     String getName();
+
+    default void sort(Path inputFile, Path outputFile, long maxMemoryBytes, SortOptions options) throws IOException {
+        if (options.isIdentity()) {
+            sort(inputFile, outputFile, maxMemoryBytes);
+            return;
+        }
+
+        Path filtered = Files.createTempFile("filtered_", ".tmp");
+        try {
+            options.apply(inputFile, filtered);
+            sort(filtered, outputFile, maxMemoryBytes);
+        } finally {
+            Files.deleteIfExists(filtered);
+        }
+    }
 }
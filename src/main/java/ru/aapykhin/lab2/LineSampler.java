@@ -0,0 +1,73 @@
+package ru.aapykhin.lab2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class LineSampler {
+
+    private static final int SAMPLE_WINDOW = 4 * 1024;
+
+    private LineSampler() {
+    }
+
+    public static List<byte[]> sample(FileChannel channel, long start, long end, int count, Random random)
+            throws IOException {
+        List<byte[]> samples = new ArrayList<>(count);
+        if (start >= end) {
+            return samples;
+        }
+
+        ByteBuffer window = ByteBuffer.allocate(SAMPLE_WINDOW);
+        for (int s = 0; s < count; s++) {
+            long offset = start + (long) (random.nextDouble() * (end - start));
+            window.clear();
+            int read = channel.read(window, offset);
+            if (read <= 0) {
+                continue;
+            }
+
+            byte[] bytes = window.array();
+            int from = 0;
+            if (offset > 0) {
+                while (from < read && bytes[from] != '\n') {
+                    from++;
+                }
+                from++;
+            }
+            if (from >= read) {
+                continue;
+            }
+
+            int to = from;
+            while (to < read && bytes[to] != '\n') {
+                to++;
+            }
+            if (to > from && bytes[to - 1] == '\r') {
+                to--;
+            }
+            samples.add(Arrays.copyOfRange(bytes, from, to));
+        }
+        return samples;
+    }
+
+    public static byte[][] chooseSplitters(List<byte[]> samples, int buckets) {
+        if (samples.isEmpty()) {
+            return new byte[0][];
+        }
+        samples.sort(Arrays::compareUnsigned);
+
+        List<byte[]> splitters = new ArrayList<>();
+        for (int i = 1; i < buckets; i++) {
+            byte[] candidate = samples.get((int) ((long) i * samples.size() / buckets));
+            if (splitters.isEmpty() || Arrays.compareUnsigned(splitters.get(splitters.size() - 1), candidate) < 0) {
+                splitters.add(candidate);
+            }
+        }
+        return splitters.toArray(new byte[0][]);
+    }
+}
@@ -0,0 +1,180 @@
+package ru.aapykhin.lab2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class OverflowStore implements Closeable {
+
+    static final int PREFIX_BYTES = 64;
+
+    private final FileChannel channel;
+    private final ByteBuffer left;
+    private final ByteBuffer right;
+    private final List<Record> records = new ArrayList<>();
+    private long end;
+
+    OverflowStore(Path file, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.left = ByteBuffer.allocate(Math.max(bufferSize, PREFIX_BYTES));
+        this.right = ByteBuffer.allocate(Math.max(bufferSize, PREFIX_BYTES));
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    long begin() {
+        return end;
+    }
+
+    void append(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            end += channel.write(source, end);
+        }
+    }
+
+    void finish(long offset) throws IOException {
+        long length = end - offset;
+        if (length > 0 && read(offset + length - 1, 1)[0] == '\r') {
+            length--;
+        }
+        records.add(new Record(offset, length, read(offset, (int) Math.min(PREFIX_BYTES, length))));
+    }
+
+    boolean lastStartsWith(byte[] prefix) throws IOException {
+        Record record = records.get(records.size() - 1);
+        if (record.length < prefix.length) {
+            return false;
+        }
+        byte[] head = prefix.length <= record.prefix.length
+                ? record.prefix
+                : read(record.offset, prefix.length);
+        return Arrays.mismatch(head, 0, prefix.length, prefix, 0, prefix.length) < 0;
+    }
+
+    void discardLast() {
+        records.remove(records.size() - 1);
+    }
+
+    void sort() throws IOException {
+        try {
+            records.sort((a, b) -> {
+                try {
+                    return compare(a, b);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    int compareTo(int index, byte[] line, int length) throws IOException {
+        Record record = records.get(index);
+        int common = Math.min(record.prefix.length, length);
+        int result = Arrays.compareUnsigned(record.prefix, 0, common, line, 0, common);
+        if (result != 0 || common == length) {
+            return result != 0 ? result : Long.compare(record.length, length);
+        }
+        if (common == record.length) {
+            return -1;
+        }
+
+        long position = record.offset + common;
+        int compared = common;
+        while (compared < length && position < record.offset + record.length) {
+            int chunk = (int) Math.min(Math.min(left.capacity(), length - compared),
+                    record.offset + record.length - position);
+            fill(left, position, chunk);
+            result = Arrays.compareUnsigned(left.array(), 0, chunk, line, compared, compared + chunk);
+            if (result != 0) {
+                return result;
+            }
+            position += chunk;
+            compared += chunk;
+        }
+        return Long.compare(record.length, length);
+    }
+
+    void writeTo(int index, OutputStream out) throws IOException {
+        Record record = records.get(index);
+        long position = record.offset;
+        long remaining = record.length;
+        while (remaining > 0) {
+            int chunk = (int) Math.min(left.capacity(), remaining);
+            fill(left, position, chunk);
+            out.write(left.array(), 0, chunk);
+            position += chunk;
+            remaining -= chunk;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int compare(Record a, Record b) throws IOException {
+        int common = Math.min(a.prefix.length, b.prefix.length);
+        int result = Arrays.compareUnsigned(a.prefix, 0, common, b.prefix, 0, common);
+        if (result != 0 || common < PREFIX_BYTES) {
+            return result != 0 ? result : Long.compare(a.length, b.length);
+        }
+
+        long compared = common;
+        long limit = Math.min(a.length, b.length);
+        while (compared < limit) {
+            int chunk = (int) Math.min(left.capacity(), limit - compared);
+            fill(left, a.offset + compared, chunk);
+            fill(right, b.offset + compared, chunk);
+            result = Arrays.compareUnsigned(left.array(), 0, chunk, right.array(), 0, chunk);
+            if (result != 0) {
+                return result;
+            }
+            compared += chunk;
+        }
+        return Long.compare(a.length, b.length);
+    }
+
+    private byte[] read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of overflow file at " + (position + buffer.position()));
+            }
+        }
+        return buffer.array();
+    }
+
+    private void fill(ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of overflow file at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    private static class Record {
+        final long offset;
+        final long length;
+        final byte[] prefix;
+
+        Record(long offset, long length, byte[] prefix) {
+            this.offset = offset;
+            this.length = length;
+            this.prefix = prefix;
+        }
+    }
+}
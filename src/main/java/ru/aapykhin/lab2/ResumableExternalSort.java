@@ -0,0 +1,337 @@
+package ru.aapykhin.lab2;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+public class ResumableExternalSort implements ExternalSorter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MERGE_FAN_IN = 16;
+    private static final int FINGERPRINT_BYTES = 64 * 1024;
+    private static final int MAX_ARENA_CAPACITY = Integer.MAX_VALUE - 8;
+    private static final String MANIFEST_FILE = "manifest.properties";
+    private static final String FORMAT_VERSION = "1";
+
+    private final Path workDir;
+    private final int mergeFanIn;
+
+    private Properties manifest;
+    private int reusedRuns;
+    private int reusedPasses;
+    private int reusedMerges;
+
+    public ResumableExternalSort(Path workDir) {
+        this(workDir, DEFAULT_MERGE_FAN_IN);
+    }
+
+    public ResumableExternalSort(Path workDir, int mergeFanIn) {
+        if (mergeFanIn < 2) {
+            throw new IllegalArgumentException("Merge fan-in must be at least 2: " + mergeFanIn);
+        }
+        this.workDir = workDir;
+        this.mergeFanIn = mergeFanIn;
+    }
+
+    @Override
+    public String getName() {
+        return "ResumableExternalSort (Manifest)";
+    }
+
+    public int getReusedRuns() {
+        return reusedRuns;
+    }
+
+    public int getReusedPasses() {
+        return reusedPasses;
+    }
+
+    public int getReusedMerges() {
+        return reusedMerges;
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException {
+        Files.createDirectories(workDir);
+        reusedRuns = 0;
+        reusedPasses = 0;
+        reusedMerges = 0;
+        manifest = loadManifest(inputFile, maxMemoryBytes);
+
+        int pass = intProperty("passes.completed");
+        List<Path> level = pass > 0 ? completedPass(pass) : null;
+        if (level == null) {
+            pass = 0;
+            level = generateRuns(inputFile, maxMemoryBytes);
+        } else {
+            reusedPasses = pass;
+        }
+
+        while (level.size() > mergeFanIn) {
+            level = mergePass(level, ++pass);
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile), BUFFER_SIZE)) {
+            RunMerger.merge(level, out, BUFFER_SIZE);
+        }
+
+        clearWorkDir();
+    }
+
+    private List<Path> generateRuns(Path inputFile, long maxMemoryBytes) throws IOException {
+        List<Path> runs = validateRuns();
+        reusedRuns = runs.size();
+        if (Boolean.parseBoolean(manifest.getProperty("split.complete"))) {
+            return runs;
+        }
+
+        long offset = runs.isEmpty() ? 0 : longProperty("run." + (runs.size() - 1) + ".end");
+        long remaining = Files.size(inputFile) - offset;
+        int capacity = (int) Math.max(1, Math.min(Math.min(maxMemoryBytes, MAX_ARENA_CAPACITY), remaining + 1));
+        ChunkArena arena = new ChunkArena(capacity, BUFFER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            channel.position(offset);
+            long chunkStart = offset;
+            ByteBuffer buffer = arena.buffer();
+            int lineStart = 0;
+            int scan = 0;
+
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (lineStart == 0) {
+                        arena.grow(buffer.capacity() * 2);
+                        buffer = arena.buffer();
+                    } else {
+                        runs.add(writeRun(arena, runs.size(), chunkStart, chunkStart + lineStart));
+                        chunkStart += lineStart;
+                        scan = buffer.position() - lineStart;
+                        arena.compact(lineStart);
+                        lineStart = 0;
+                    }
+                }
+
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+
+                int end = buffer.position();
+                lineStart = arena.addLines(lineStart, scan, end);
+                scan = end;
+            }
+
+            if (lineStart < buffer.position()) {
+                arena.addLine(lineStart, buffer.position());
+                lineStart = buffer.position();
+            }
+            if (arena.size() > 0) {
+                runs.add(writeRun(arena, runs.size(), chunkStart, chunkStart + lineStart));
+            }
+        }
+
+        manifest.setProperty("split.complete", "true");
+        saveManifest();
+        return runs;
+    }
+
+    private Path writeRun(ChunkArena arena, int index, long start, long end) throws IOException {
+        arena.sort();
+
+        Path runFile = workDir.resolve("run_" + index + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(runFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            arena.writeTo(channel, checksum);
+            channel.force(false);
+        }
+
+        String key = "run." + index;
+        manifest.setProperty(key + ".file", runFile.getFileName().toString());
+        manifest.setProperty(key + ".start", String.valueOf(start));
+        manifest.setProperty(key + ".end", String.valueOf(end));
+        manifest.setProperty(key + ".crc", String.valueOf(checksum.getValue()));
+        manifest.setProperty("split.runs", String.valueOf(index + 1));
+        saveManifest();
+        return runFile;
+    }
+
+    private List<Path> validateRuns() throws IOException {
+        List<Path> runs = new ArrayList<>();
+        int recorded = intProperty("split.runs");
+
+        for (int i = 0; i < recorded; i++) {
+            Path runFile = workDir.resolve(manifest.getProperty("run." + i + ".file"));
+            if (!Files.exists(runFile) || crcOf(runFile) != longProperty("run." + i + ".crc")) {
+                for (int j = i; j < recorded; j++) {
+                    Files.deleteIfExists(workDir.resolve("run_" + j + ".tmp"));
+                    for (String suffix : new String[]{".file", ".start", ".end", ".crc"}) {
+                        manifest.remove("run." + j + suffix);
+                    }
+                }
+                manifest.setProperty("split.runs", String.valueOf(i));
+                manifest.remove("split.complete");
+                saveManifest();
+                break;
+            }
+            runs.add(runFile);
+        }
+        return runs;
+    }
+
+    private List<Path> mergePass(List<Path> inputs, int pass) throws IOException {
+        List<Path> outputs = new ArrayList<>();
+        int groups = (inputs.size() + mergeFanIn - 1) / mergeFanIn;
+
+        for (int g = 0; g < groups; g++) {
+            String key = "pass." + pass + ".group." + g;
+            Path mergedFile = workDir.resolve("merge_" + pass + "_" + g + ".tmp");
+            outputs.add(mergedFile);
+
+            String crc = manifest.getProperty(key + ".crc");
+            if (crc != null && Files.exists(mergedFile) && crcOf(mergedFile) == Long.parseLong(crc)) {
+                reusedMerges++;
+                continue;
+            }
+
+            List<Path> batch = inputs.subList(g * mergeFanIn, Math.min(inputs.size(), (g + 1) * mergeFanIn));
+            CRC32 checksum = new CRC32();
+            try (OutputStream out = new BufferedOutputStream(new CheckedOutputStream(
+                    Files.newOutputStream(mergedFile), checksum), BUFFER_SIZE)) {
+                RunMerger.merge(batch, out, BUFFER_SIZE);
+            }
+
+            manifest.setProperty(key + ".file", mergedFile.getFileName().toString());
+            manifest.setProperty(key + ".crc", String.valueOf(checksum.getValue()));
+            saveManifest();
+        }
+
+        manifest.setProperty("pass." + pass + ".groups", String.valueOf(groups));
+        manifest.setProperty("passes.completed", String.valueOf(pass));
+        saveManifest();
+
+        for (Path input : inputs) {
+            Files.deleteIfExists(input);
+        }
+        return outputs;
+    }
+
+    private List<Path> completedPass(int pass) throws IOException {
+        List<Path> outputs = new ArrayList<>();
+        int groups = intProperty("pass." + pass + ".groups");
+        for (int g = 0; g < groups; g++) {
+            String key = "pass." + pass + ".group." + g;
+            Path mergedFile = workDir.resolve(manifest.getProperty(key + ".file"));
+            if (!Files.exists(mergedFile) || crcOf(mergedFile) != longProperty(key + ".crc")) {
+                manifest = freshManifest(manifest);
+                clearWorkDir();
+                saveManifest();
+                return null;
+            }
+            outputs.add(mergedFile);
+        }
+        return outputs;
+    }
+
+    private Properties loadManifest(Path inputFile, long maxMemoryBytes) throws IOException {
+        Properties expected = new Properties();
+        expected.setProperty("version", FORMAT_VERSION);
+        expected.setProperty("input.path", inputFile.toAbsolutePath().toString());
+        expected.setProperty("input.size", String.valueOf(Files.size(inputFile)));
+        expected.setProperty("input.modified", String.valueOf(Files.getLastModifiedTime(inputFile).toMillis()));
+        expected.setProperty("input.fingerprint", String.valueOf(fingerprint(inputFile)));
+        expected.setProperty("option.maxMemoryBytes", String.valueOf(maxMemoryBytes));
+        expected.setProperty("option.mergeFanIn", String.valueOf(mergeFanIn));
+
+        Path manifestFile = workDir.resolve(MANIFEST_FILE);
+        if (Files.exists(manifestFile)) {
+            Properties loaded = new Properties();
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                loaded.load(in);
+            }
+            boolean matches = true;
+            for (String key : expected.stringPropertyNames()) {
+                matches &= expected.getProperty(key).equals(loaded.getProperty(key));
+            }
+            if (matches) {
+                return loaded;
+            }
+        }
+
+        clearWorkDir();
+        manifest = expected;
+        saveManifest();
+        return expected;
+    }
+
+    private static Properties freshManifest(Properties current) {
+        Properties fresh = new Properties();
+        for (String key : current.stringPropertyNames()) {
+            if (key.equals("version") || key.startsWith("input.") || key.startsWith("option.")) {
+                fresh.setProperty(key, current.getProperty(key));
+            }
+        }
+        return fresh;
+    }
+
+    private void saveManifest() throws IOException {
+        Path manifestFile = workDir.resolve(MANIFEST_FILE);
+        Path tempFile = workDir.resolve(MANIFEST_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile.toFile())) {
+            manifest.store(out, "External sort manifest");
+            out.getFD().sync();
+        }
+        Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int intProperty(String key) {
+        return (int) longProperty(key);
+    }
+
+    private long longProperty(String key) {
+        String value = manifest.getProperty(key);
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    private static long fingerprint(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(FINGERPRINT_BYTES, size));
+            channel.read(buffer, 0);
+            buffer.flip();
+            crc.update(buffer);
+
+            buffer.clear();
+            channel.read(buffer, Math.max(0, size - buffer.capacity()));
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return crc.getValue();
+    }
+
+    private static long crcOf(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(file), crc)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) >= 0) {
+                continue;
+            }
+        }
+        return crc.getValue();
+    }
+
+    private void clearWorkDir() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(workDir, "{run_,merge_,manifest}*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.aapykhin.lab2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+final class RunMerger {
+
+    private RunMerger() {
+    }
+
+    static void merge(List<Path> runs, OutputStream out, int bufferSize) throws IOException {
+        merge(runs, null, out, bufferSize);
+    }
+
+    static void merge(List<Path> runs, OverflowStore overflow, OutputStream out, int bufferSize)
+            throws IOException {
+        int overflowCount = overflow == null ? 0 : overflow.size();
+        int nextOverflow = 0;
+        List<ByteLineReader> readers = new ArrayList<>();
+        PriorityQueue<ByteLineReader> heap = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> Arrays.compareUnsigned(a.line, 0, a.length, b.line, 0, b.length));
+
+        try {
+            for (Path run : runs) {
+                ByteLineReader reader = new ByteLineReader(Files.newInputStream(run), bufferSize);
+                readers.add(reader);
+
+                if (reader.advance()) {
+                    heap.offer(reader);
+                }
+            }
+
+            while (!heap.isEmpty() || nextOverflow < overflowCount) {
+                if (nextOverflow < overflowCount && (heap.isEmpty()
+                        || overflow.compareTo(nextOverflow, heap.peek().line, heap.peek().length) <= 0)) {
+                    overflow.writeTo(nextOverflow++, out);
+                    out.write('\n');
+                    continue;
+                }
+
+                ByteLineReader min = heap.poll();
+                out.write(min.line, 0, min.length);
+                out.write('\n');
+
+                if (min.advance()) {
+                    heap.offer(min);
+                }
+            }
+        } finally {
+            for (ByteLineReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.aapykhin.lab2;
+
+import java.nio.ByteBuffer;
+
+final class ScalarByteKernels implements ByteKernels {
+
+    static final ScalarByteKernels INSTANCE = new ScalarByteKernels();
+
+    private ScalarByteKernels() {
+    }
+
+    @Override
+    public int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int mismatch(ByteBuffer buffer, int offsetA, int offsetB, int length) {
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            if (buffer.getLong(offsetA + i) != buffer.getLong(offsetB + i)) {
+                break;
+            }
+        }
+        for (; i < length; i++) {
+            if (buffer.get(offsetA + i) != buffer.get(offsetB + i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
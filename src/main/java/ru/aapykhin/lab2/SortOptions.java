@@ -0,0 +1,175 @@
+package ru.aapykhin.lab2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+public class SortOptions {
+
+    public static final SortOptions NONE = new SortOptions(null, null, (byte) '\t', null);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final byte[] prefix;
+    private final String prefixText;
+    private final Predicate<String> filter;
+    private final byte delimiter;
+    private final int[] fields;
+
+    private SortOptions(byte[] prefix, Predicate<String> filter, byte delimiter, int[] fields) {
+        this.prefix = prefix;
+        this.prefixText = prefix == null ? null : new String(prefix, StandardCharsets.UTF_8);
+        this.filter = filter;
+        this.delimiter = delimiter;
+        this.fields = fields;
+    }
+
+    public SortOptions withPrefix(String prefix) {
+        return new SortOptions(prefix.getBytes(StandardCharsets.UTF_8), filter, delimiter, fields);
+    }
+
+    public SortOptions withFilter(Predicate<String> filter) {
+        return new SortOptions(prefix, this.filter == null ? filter : this.filter.and(filter), delimiter, fields);
+    }
+
+    public SortOptions withProjection(char delimiter, int... fields) {
+        if (delimiter > 0x7F) {
+            throw new IllegalArgumentException("Delimiter must be an ASCII character: " + delimiter);
+        }
+        if (fields.length == 0) {
+            throw new IllegalArgumentException("Projection needs at least one field");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] < 0) {
+                throw new IllegalArgumentException("Negative field index: " + fields[i]);
+            }
+            for (int j = 0; j < i; j++) {
+                if (fields[j] == fields[i]) {
+                    throw new IllegalArgumentException("Duplicate field index: " + fields[i]);
+                }
+            }
+        }
+        return new SortOptions(prefix, filter, (byte) delimiter, fields.clone());
+    }
+
+    public boolean isIdentity() {
+        return prefix == null && filter == null && fields == null;
+    }
+
+    public boolean hasProjection() {
+        return fields != null;
+    }
+
+    public boolean test(String line) {
+        if (prefixText != null && !line.startsWith(prefixText)) {
+            return false;
+        }
+        return filter == null || filter.test(line);
+    }
+
+    public String project(String line) {
+        if (fields == null) {
+            return line;
+        }
+
+        String[] parts = line.split(Pattern.quote(String.valueOf((char) delimiter)), -1);
+        StringBuilder sb = new StringBuilder(line.length());
+        boolean first = true;
+        for (int field : fields) {
+            if (field < parts.length) {
+                if (!first) {
+                    sb.append((char) delimiter);
+                }
+                sb.append(parts[field]);
+                first = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    boolean isStreamable() {
+        return filter == null && fields == null;
+    }
+
+    byte[] prefix() {
+        return prefix;
+    }
+
+    boolean accepts(byte[] line, int length) {
+        if (prefix != null && (length < prefix.length
+                || Arrays.mismatch(line, 0, prefix.length, prefix, 0, prefix.length) >= 0)) {
+            return false;
+        }
+        return filter == null || filter.test(new String(line, 0, length, StandardCharsets.UTF_8));
+    }
+
+    int project(byte[] line, int length, byte[] target) {
+        if (fields == null) {
+            System.arraycopy(line, 0, target, 0, length);
+            return length;
+        }
+
+        int written = 0;
+        boolean first = true;
+        for (int field : fields) {
+            int start = 0;
+            int index = 0;
+            while (index < field && start <= length) {
+                int next = indexOf(line, start, length);
+                start = next < 0 ? length + 1 : next + 1;
+                index++;
+            }
+            if (start > length) {
+                continue;
+            }
+
+            int end = indexOf(line, start, length);
+            if (end < 0) {
+                end = length;
+            }
+            if (!first) {
+                target[written++] = delimiter;
+            }
+            System.arraycopy(line, start, target, written, end - start);
+            written += end - start;
+            first = false;
+        }
+        return written;
+    }
+
+    void apply(Path inputFile, Path outputFile) throws IOException {
+        byte[] projected = new byte[256];
+        try (ByteLineReader reader = new ByteLineReader(Files.newInputStream(inputFile), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile), BUFFER_SIZE)) {
+            while (reader.advance()) {
+                int length = reader.length;
+                if (length > 0 && reader.line[length - 1] == '\r') {
+                    length--;
+                }
+                if (!accepts(reader.line, length)) {
+                    continue;
+                }
+                if (projected.length < length) {
+                    projected = new byte[Math.max(length, projected.length * 2)];
+                }
+                out.write(projected, 0, project(reader.line, length, projected));
+                out.write('\n');
+            }
+        }
+    }
+
+    private int indexOf(byte[] line, int from, int length) {
+        for (int i = from; i < length; i++) {
+            if (line[i] == delimiter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.aapykhin.lab2;
+
+import java.util.List;
+
+public class SortPlan {
+
+    public enum Strategy {
+        IN_MEMORY,
+        SINGLE_MERGE,
+        MULTI_PASS
+    }
+
+    private final Strategy strategy;
+    private final long inputSize;
+    private final long estimatedRecords;
+    private final int threads;
+    private final int bufferSize;
+    private final long runSize;
+    private final long estimatedRuns;
+    private final int mergeFanIn;
+    private final List<String> reasons;
+
+    SortPlan(Strategy strategy, long inputSize, long estimatedRecords, int threads, int bufferSize,
+             long runSize, long estimatedRuns, int mergeFanIn, List<String> reasons) {
+        this.strategy = strategy;
+        this.inputSize = inputSize;
+        this.estimatedRecords = estimatedRecords;
+        this.threads = threads;
+        this.bufferSize = bufferSize;
+        this.runSize = runSize;
+        this.estimatedRuns = estimatedRuns;
+        this.mergeFanIn = mergeFanIn;
+        this.reasons = List.copyOf(reasons);
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    public long getEstimatedRecords() {
+        return estimatedRecords;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public long getRunSize() {
+        return runSize;
+    }
+
+    public long getEstimatedRuns() {
+        return estimatedRuns;
+    }
+
+    public int getMergeFanIn() {
+        return mergeFanIn;
+    }
+
+    public List<String> getReasons() {
+        return reasons;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SortPlan ").append(strategy)
+                .append(": input=").append(inputSize).append(" bytes")
+                .append(", ~").append(estimatedRecords).append(" records")
+                .append(", threads=").append(threads)
+                .append(", bufferSize=").append(bufferSize);
+        if (strategy != Strategy.IN_MEMORY) {
+            sb.append(", runSize=").append(runSize)
+                    .append(", ~").append(estimatedRuns).append(" runs")
+                    .append(", mergeFanIn=").append(mergeFanIn);
+        }
+        for (String reason : reasons) {
+            sb.append(System.lineSeparator()).append("  - ").append(reason);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.aapykhin.lab2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.aapykhin.lab2.ByteKernels;
+import ru.aapykhin.lab2.util.DataGenerator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ByteKernelsBenchmark {
+
+    private static final int BUFFER_BYTES = 4 * 1024 * 1024;
+
+    @Param({"scalar", "vector"})
+    private String kernel;
+
+    @Param({"10", "100", "1000", "mixed"})
+    private String lineLength;
+
+    private ByteKernels kernels;
+    private ByteBuffer buffer;
+    private int[] offsets;
+    private int[] lengths;
+    private int lines;
+    private int half;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        kernels = ByteKernels.load(kernel.equals("vector"));
+        if (!kernels.getName().startsWith(kernel)) {
+            throw new IllegalStateException("Vector kernels are not available, build with -Pvector");
+        }
+
+        DataGenerator generator = new DataGenerator(42);
+        half = BUFFER_BYTES / 2;
+        buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        offsets = new int[half / 11 + 1];
+        lengths = new int[offsets.length];
+
+        int position = 0;
+        while (true) {
+            byte[] line = nextLine(generator);
+            if (position + line.length + 1 > half) {
+                break;
+            }
+            buffer.put(position, line).put(position + line.length, (byte) '\n');
+            buffer.put(half + position, line).put(half + position + line.length, (byte) '\n');
+            buffer.put(half + position + line.length - 1, (byte) '~');
+
+            offsets[lines] = position;
+            lengths[lines] = line.length;
+            lines++;
+            position += line.length + 1;
+        }
+    }
+
+    private byte[] nextLine(DataGenerator generator) {
+        if (lineLength.equals("mixed")) {
+            return generator.generateRandomLine().getBytes(StandardCharsets.UTF_8);
+        }
+        int length = Integer.parseInt(lineLength);
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append(generator.generateRandomLine());
+        }
+        return sb.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int scanNewlines() {
+        int count = 0;
+        int from = 0;
+        int newline;
+        while ((newline = kernels.indexOf(buffer, from, half, (byte) '\n')) >= 0) {
+            count++;
+            from = newline + 1;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long compareLines() {
+        long sum = 0;
+        for (int i = 0; i < lines; i++) {
+            sum += kernels.mismatch(buffer, offsets[i], half + offsets[i], lengths[i]);
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ByteKernelsBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
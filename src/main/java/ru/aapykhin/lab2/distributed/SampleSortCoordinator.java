@@ -0,0 +1,202 @@
+package ru.aapykhin.lab2.distributed;
+
+import ru.aapykhin.lab2.ExternalSorter;
+import ru.aapykhin.lab2.LineSampler;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SampleSortCoordinator implements ExternalSorter {
+
+    private static final int ACCEPT_TIMEOUT_MS = 60_000;
+    private static final int EXIT_TIMEOUT_SECONDS = 30;
+
+    private final int workers;
+    private final List<String> workerJvmOptions;
+
+    private Path tempDir;
+
+    public SampleSortCoordinator() {
+        this(defaultWorkers());
+    }
+
+    public SampleSortCoordinator(int workers) {
+        this(workers, List.of());
+    }
+
+    public SampleSortCoordinator(int workers, List<String> workerJvmOptions) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workers);
+        }
+        this.workers = workers;
+        this.workerJvmOptions = List.copyOf(workerJvmOptions);
+    }
+
+    public static int defaultWorkers() {
+        return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Override
+    public String getName() {
+        return "SampleSortCoordinator (" + workers + " worker JVMs)";
+    }
+
+    @Override
+    public void sort(Path inputFile, Path outputFile, long maxMemoryBytes) throws IOException {
+        long inputSize = Files.size(inputFile);
+        if (inputSize == 0) {
+            Files.createFile(outputFile);
+            return;
+        }
+
+        tempDir = Files.createTempDirectory("sample_sort_");
+        List<Process> processes = new ArrayList<>();
+        WorkerConnection[] connections = new WorkerConnection[workers];
+
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_TIMEOUT_MS);
+            for (int i = 0; i < workers; i++) {
+                processes.add(launchWorker(server.getLocalPort(), i));
+            }
+            for (int i = 0; i < workers; i++) {
+                WorkerConnection connection = new WorkerConnection(server.accept());
+                connections[connection.workerId] = connection;
+            }
+
+            long rangeSize = (inputSize + workers - 1) / workers;
+            for (int i = 0; i < workers; i++) {
+                DataOutputStream out = connections[i].out;
+                out.writeUTF(inputFile.toAbsolutePath().toString());
+                out.writeLong(Math.min(inputSize, i * rangeSize));
+                out.writeLong(Math.min(inputSize, (i + 1) * rangeSize));
+                out.writeLong(Math.max(1, maxMemoryBytes / workers));
+                out.writeUTF(tempDir.toAbsolutePath().toString());
+                out.writeInt(workers);
+                for (WorkerConnection peer : connections) {
+                    out.writeInt(peer.shufflePort);
+                }
+                out.flush();
+            }
+
+            List<byte[]> samples = new ArrayList<>();
+            for (WorkerConnection connection : connections) {
+                samples.addAll(Arrays.asList(SampleSortProtocol.readRecords(connection.in)));
+            }
+            byte[][] splitters = LineSampler.chooseSplitters(samples, workers);
+            for (WorkerConnection connection : connections) {
+                SampleSortProtocol.writeRecords(connection.out, splitters);
+                connection.out.flush();
+            }
+
+            long[] segmentSizes = new long[workers];
+            long totalSize = 0;
+            for (int i = 0; i < workers; i++) {
+                segmentSizes[i] = connections[i].in.readLong();
+                totalSize += segmentSizes[i];
+            }
+
+            try (RandomAccessFile output = new RandomAccessFile(outputFile.toFile(), "rw")) {
+                output.setLength(totalSize);
+            }
+
+            long offset = 0;
+            for (int i = 0; i < workers; i++) {
+                connections[i].out.writeUTF(outputFile.toAbsolutePath().toString());
+                connections[i].out.writeLong(offset);
+                connections[i].out.flush();
+                offset += segmentSizes[i];
+            }
+            for (WorkerConnection connection : connections) {
+                connection.in.readInt();
+            }
+
+            awaitWorkers(processes);
+        } finally {
+            for (WorkerConnection connection : connections) {
+                if (connection != null) {
+                    try {
+                        connection.socket.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+            cleanup();
+        }
+    }
+
+    private Process launchWorker(int coordinatorPort, int workerId) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(workerJvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SampleSortWorker.class.getName());
+        command.add(String.valueOf(coordinatorPort));
+        command.add(String.valueOf(workerId));
+
+        return new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private void awaitWorkers(List<Process> processes) throws IOException {
+        for (int i = 0; i < processes.size(); i++) {
+            Process process = processes.get(i);
+            try {
+                if (!process.waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IOException("Worker " + i + " did not exit");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for worker " + i, e);
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("Worker " + i + " exited with code " + process.exitValue());
+            }
+        }
+    }
+
+    private static class WorkerConnection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final int workerId;
+        final int shufflePort;
+
+        WorkerConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.workerId = in.readInt();
+            this.shufflePort = in.readInt();
+        }
+    }
+
+    private void cleanup() {
+        if (tempDir != null) {
+            try {
+                Files.walk(tempDir)
+                        .sorted((a, b) -> -a.compareTo(b))
+                        .forEach(path -> {
+                            try {
+                                Files.deleteIfExists(path);
+                            } catch (IOException ignored) {
+                            }
+                        });
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.aapykhin.lab2.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+final class SampleSortProtocol {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int SAMPLES_PER_WORKER = 256;
+    static final int END_OF_STREAM = -1;
+
+    private SampleSortProtocol() {
+    }
+
+    static void writeRecord(DataOutputStream out, byte[] bytes, int length) throws IOException {
+        out.writeInt(length);
+        out.write(bytes, 0, length);
+    }
+
+    static byte[] readRecord(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == END_OF_STREAM) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeRecords(DataOutputStream out, byte[][] records) throws IOException {
+        out.writeInt(records.length);
+        for (byte[] record : records) {
+            writeRecord(out, record, record.length);
+        }
+    }
+
+    static byte[][] readRecords(DataInputStream in) throws IOException {
+        byte[][] records = new byte[in.readInt()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = readRecord(in);
+        }
+        return records;
+    }
+
+    static int findPartition(byte[][] splitters, byte[] line, int length) {
+        int lo = 0;
+        int hi = splitters.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Arrays.compareUnsigned(splitters[mid], 0, splitters[mid].length, line, 0, length) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,306 @@
+package ru.aapykhin.lab2.distributed;
+
+import ru.aapykhin.lab2.ExternalSortV2;
+import ru.aapykhin.lab2.LineSampler;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+public class SampleSortWorker {
+
+    private static final int MERGE_FAN_IN = 16;
+
+    private final int workerId;
+
+    public SampleSortWorker(int workerId) {
+        this.workerId = workerId;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SampleSortWorker <coordinatorPort> <workerId>");
+            System.exit(2);
+        }
+        new SampleSortWorker(Integer.parseInt(args[1])).run(Integer.parseInt(args[0]));
+    }
+
+    public void run(int coordinatorPort) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (ServerSocket shuffleServer = new ServerSocket(0, 64, loopback);
+             Socket coordinator = new Socket(loopback, coordinatorPort)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+
+            out.writeInt(workerId);
+            out.writeInt(shuffleServer.getLocalPort());
+            out.flush();
+
+            Path inputFile = Path.of(in.readUTF());
+            long start = in.readLong();
+            long end = in.readLong();
+            long maxMemoryBytes = in.readLong();
+            Path workDir = Path.of(in.readUTF()).resolve("worker_" + workerId);
+            int[] peerPorts = new int[in.readInt()];
+            for (int i = 0; i < peerPorts.length; i++) {
+                peerPorts[i] = in.readInt();
+            }
+            Files.createDirectories(workDir);
+
+            SampleSortProtocol.writeRecords(out, sample(inputFile, start, end));
+            out.flush();
+
+            byte[][] splitters = SampleSortProtocol.readRecords(in);
+            List<Path> partitions = shuffle(inputFile, start, end, splitters, peerPorts, shuffleServer, workDir);
+
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / peerPorts.length);
+            Path sortedFile = sortPartitions(partitions, workDir, maxMemoryBytes, threads);
+            out.writeLong(Files.size(sortedFile));
+            out.flush();
+
+            Path outputFile = Path.of(in.readUTF());
+            long offset = in.readLong();
+            writeSegment(sortedFile, outputFile, offset);
+
+            out.writeInt(0);
+            out.flush();
+        }
+    }
+
+    private byte[][] sample(Path inputFile, long start, long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            return LineSampler.sample(channel, start, end, SampleSortProtocol.SAMPLES_PER_WORKER,
+                    new Random(workerId)).toArray(new byte[0][]);
+        }
+    }
+
+    private List<Path> shuffle(Path inputFile, long start, long end, byte[][] splitters, int[] peerPorts,
+                               ServerSocket shuffleServer, Path workDir) throws IOException {
+        int workers = peerPorts.length;
+        List<Path> partitions = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            partitions.add(workDir.resolve("partition_from_" + i + ".tmp"));
+        }
+
+        ExecutorService receivers = Executors.newFixedThreadPool(Math.max(1, workers - 1));
+        List<Future<?>> received = new ArrayList<>();
+        for (int i = 0; i < workers - 1; i++) {
+            received.add(receivers.submit(() -> {
+                receive(shuffleServer, partitions);
+                return null;
+            }));
+        }
+
+        DataOutputStream[] peers = new DataOutputStream[workers];
+        OutputStream local = new BufferedOutputStream(
+                Files.newOutputStream(partitions.get(workerId)), SampleSortProtocol.BUFFER_SIZE);
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+
+        try {
+            for (int i = 0; i < workers; i++) {
+                if (i != workerId) {
+                    Socket socket = new Socket(loopback, peerPorts[i]);
+                    peers[i] = new DataOutputStream(
+                            new BufferedOutputStream(socket.getOutputStream(), SampleSortProtocol.BUFFER_SIZE));
+                    peers[i].writeInt(workerId);
+                }
+            }
+
+            try (RangeReader reader = new RangeReader(inputFile, start, end)) {
+                while (reader.advance()) {
+                    int partition = SampleSortProtocol.findPartition(splitters, reader.line, reader.length);
+                    if (partition == workerId) {
+                        local.write(reader.line, 0, reader.length);
+                        local.write('\n');
+                    } else {
+                        SampleSortProtocol.writeRecord(peers[partition], reader.line, reader.length);
+                    }
+                }
+            }
+
+            for (DataOutputStream peer : peers) {
+                if (peer != null) {
+                    peer.writeInt(SampleSortProtocol.END_OF_STREAM);
+                    peer.flush();
+                }
+            }
+
+            for (Future<?> future : received) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Worker " + workerId + " failed to receive shuffled records", e);
+        } finally {
+            local.close();
+            for (DataOutputStream peer : peers) {
+                if (peer != null) {
+                    try {
+                        peer.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+            receivers.shutdownNow();
+        }
+
+        return partitions;
+    }
+
+    private void receive(ServerSocket shuffleServer, List<Path> partitions) throws IOException {
+        try (Socket socket = shuffleServer.accept();
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(socket.getInputStream(), SampleSortProtocol.BUFFER_SIZE))) {
+            int sender = in.readInt();
+            try (OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(partitions.get(sender)), SampleSortProtocol.BUFFER_SIZE)) {
+                byte[] record;
+                while ((record = SampleSortProtocol.readRecord(in)) != null) {
+                    out.write(record);
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    private Path sortPartitions(List<Path> partitions, Path workDir, long maxMemoryBytes, int threads)
+            throws IOException {
+        Path partitionFile = workDir.resolve("partition.tmp");
+        try (FileChannel out = FileChannel.open(partitionFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Path partition : partitions) {
+                try (FileChannel in = FileChannel.open(partition, StandardOpenOption.READ)) {
+                    transfer(in, out);
+                }
+                Files.delete(partition);
+            }
+        }
+
+        Path sortedFile = workDir.resolve("sorted.tmp");
+        new ExternalSortV2(threads, SampleSortProtocol.BUFFER_SIZE, MERGE_FAN_IN)
+                .sort(partitionFile, sortedFile, maxMemoryBytes);
+        Files.delete(partitionFile);
+        return sortedFile;
+    }
+
+    private void writeSegment(Path sortedFile, Path outputFile, long offset) throws IOException {
+        try (FileChannel in = FileChannel.open(sortedFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(outputFile, StandardOpenOption.WRITE)) {
+            out.position(offset);
+            transfer(in, out);
+        }
+        Files.delete(sortedFile);
+    }
+
+    private static void transfer(FileChannel in, FileChannel out) throws IOException {
+        long position = 0;
+        long size = in.size();
+        while (position < size) {
+            position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    private static class RangeReader implements Closeable {
+        private final InputStream in;
+        private final byte[] buffer = new byte[SampleSortProtocol.BUFFER_SIZE];
+        private final long end;
+        private int position;
+        private int limit;
+        private long offset;
+
+        byte[] line = new byte[256];
+        int length;
+
+        RangeReader(Path file, long start, long end) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.in = Channels.newInputStream(channel);
+            this.end = end;
+
+            if (start > 0) {
+                channel.position(start - 1);
+                this.offset = start - 1;
+                if (!skipLine()) {
+                    this.offset = end;
+                }
+            }
+        }
+
+        boolean advance() throws IOException {
+            if (offset >= end) {
+                return false;
+            }
+            length = 0;
+            boolean any = false;
+            while (true) {
+                if (position == limit && !fill()) {
+                    if (length > 0 && line[length - 1] == '\r') {
+                        length--;
+                    }
+                    return any;
+                }
+                any = true;
+                int from = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                append(from, position - from);
+                offset += position - from;
+
+                if (position < limit) {
+                    position++;
+                    offset++;
+                    if (length > 0 && line[length - 1] == '\r') {
+                        length--;
+                    }
+                    return true;
+                }
+            }
+        }
+
+        private boolean skipLine() throws IOException {
+            while (true) {
+                if (position == limit && !fill()) {
+                    return false;
+                }
+                byte b = buffer[position++];
+                offset++;
+                if (b == '\n') {
+                    return true;
+                }
+            }
+        }
+
+        private boolean fill() throws IOException {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return false;
+            }
+            return true;
+        }
+
+        private void append(int from, int count) {
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+            }
+            System.arraycopy(buffer, from, line, length, count);
+            length += count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.aapykhin.lab2.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+class AllocationSampler implements AutoCloseable {
+
+    private static final long SAMPLE_INTERVAL_MS = 5;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final Map<Long, Long> baseline = new HashMap<>();
+    private final Map<Long, Long> latest = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile long samplerThreadId = -1;
+
+    AllocationSampler() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threadBean = null;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "allocation-sampler");
+            thread.setDaemon(true);
+            samplerThreadId = thread.getId();
+            return thread;
+        });
+
+        if (threadBean != null) {
+            record(baseline);
+            latest.putAll(baseline);
+            scheduler.scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    long stop() {
+        if (threadBean == null) {
+            return -1;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+
+        synchronized (latest) {
+            long total = 0;
+            for (Map.Entry<Long, Long> entry : latest.entrySet()) {
+                total += entry.getValue() - baseline.getOrDefault(entry.getKey(), 0L);
+            }
+            return total;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        synchronized (latest) {
+            record(latest);
+        }
+    }
+
+    private void record(Map<Long, Long> target) {
+        long[] ids = threadBean.getAllThreadIds();
+        long[] allocated = threadBean.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] >= 0 && ids[i] != samplerThreadId) {
+                target.merge(ids[i], allocated[i], Math::max);
+            }
+        }
+    }
+}
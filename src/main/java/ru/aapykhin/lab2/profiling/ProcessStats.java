@@ -0,0 +1,45 @@
+package ru.aapykhin.lab2.profiling;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+final class ProcessStats {
+
+    private static final Path STATUS = Path.of("/proc/self/status");
+    private static final Path IO = Path.of("/proc/self/io");
+    private static final Path CLEAR_REFS = Path.of("/proc/self/clear_refs");
+
+    private ProcessStats() {
+    }
+
+    static long peakRss() {
+        long kilobytes = readField(STATUS, "VmHWM:");
+        return kilobytes < 0 ? -1 : kilobytes * 1024;
+    }
+
+    static long bytesWritten() {
+        return readField(IO, "wchar:");
+    }
+
+    static void resetPeakRss() {
+        try {
+            Files.writeString(CLEAR_REFS, "5");
+        } catch (IOException | UnsupportedOperationException | SecurityException ignored) {
+        }
+    }
+
+    private static long readField(Path file, String name) {
+        try {
+            for (String line : Files.readAllLines(file)) {
+                if (line.startsWith(name)) {
+                    String value = line.substring(name.length()).trim();
+                    int space = value.indexOf(' ');
+                    return Long.parseLong(space < 0 ? value : value.substring(0, space));
+                }
+            }
+        } catch (IOException | NumberFormatException | SecurityException ignored) {
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,483 @@
+package ru.aapykhin.lab2.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import ru.aapykhin.lab2.*;
+import ru.aapykhin.lab2.distributed.SampleSortCoordinator;
+import ru.aapykhin.lab2.util.DataGenerator;
+import ru.aapykhin.lab2.util.SortVerifier;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.*;
+
+public class ProfilingRunner {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MERGE_FAN_IN = 16;
+    private static final int DUPLICATE_POOL_SIZE = 1000;
+    private static final double MB = 1024.0 * 1024.0;
+    private static final List<String> THREADED_SORTERS = List.of("v2", "distribution", "dictionary", "sample");
+
+    private final Options options;
+
+    public ProfilingRunner(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Options.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        List<Metrics> results = new ProfilingRunner(options).run();
+
+        String json = toJson(options, results);
+        if (options.jsonFile != null) {
+            Files.writeString(options.jsonFile, json);
+            System.out.println("JSON written to " + options.jsonFile);
+        } else if (options.jsonOnly) {
+            System.out.println(json);
+        }
+    }
+
+    public List<Metrics> run() throws IOException {
+        Path tempDir = Files.createTempDirectory("profiling_");
+        Path inputFile = tempDir.resolve("input.txt");
+        Path outputFile = tempDir.resolve("output.txt");
+
+        try {
+            log("=== Profiling " + options.sorter + " ===");
+            log("Workload: " + options.sizeBytes + " bytes, " + options.distribution
+                    + ", memory " + options.memoryBytes + " bytes, "
+                    + (options.threads() == null ? "threads n/a" : options.threads() + " threads"));
+
+            generateInput(inputFile);
+            long inputSize = Files.size(inputFile);
+            long records = countLines(inputFile);
+            log("Input: " + inputSize + " bytes, " + records + " records");
+
+            for (int i = 1; i <= options.warmup; i++) {
+                Files.deleteIfExists(outputFile);
+                log("Warm-up " + i + "/" + options.warmup + "...");
+                createSorter(tempDir).sort(inputFile, outputFile, options.memoryBytes);
+            }
+
+            List<Metrics> results = new ArrayList<>();
+            for (int i = 1; i <= options.iterations; i++) {
+                Files.deleteIfExists(outputFile);
+                log("Iteration " + i + "/" + options.iterations + "...");
+
+                Metrics metrics = measure(createSorter(tempDir), i, inputFile, outputFile, inputSize, records);
+                results.add(metrics);
+                log("  " + metrics);
+            }
+
+            log("=== Results ===");
+            log(String.format("Average: %.1f ms, %.2f MB/s, %.0f records/s",
+                    results.stream().mapToDouble(m -> m.elapsedMs).average().orElse(0),
+                    results.stream().mapToDouble(m -> m.mbPerSecond).average().orElse(0),
+                    results.stream().mapToDouble(m -> m.recordsPerSecond).average().orElse(0)));
+            return results;
+        } finally {
+            Files.walk(tempDir)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException ignored) {
+                        }
+                    });
+        }
+    }
+
+    private Metrics measure(ExternalSorter sorter, int iteration, Path inputFile, Path outputFile,
+                            long inputSize, long records) throws IOException {
+        System.gc();
+        ProcessStats.resetPeakRss();
+
+        Recording recording = options.jfrDir != null ? startRecording() : null;
+        long gcTimeBefore = gcTime();
+        long gcCountBefore = gcCount();
+        long writtenBefore = ProcessStats.bytesWritten();
+
+        long elapsedNanos;
+        long allocated;
+        try (AllocationSampler sampler = new AllocationSampler()) {
+            long start = System.nanoTime();
+            sorter.sort(inputFile, outputFile, options.memoryBytes);
+            elapsedNanos = System.nanoTime() - start;
+            allocated = sampler.stop();
+        }
+
+        long outputSize = Files.size(outputFile);
+        long written = ProcessStats.bytesWritten();
+        long tempBytes = writtenBefore < 0 || written < 0 || recording != null || options.sorter.equals("sample")
+                ? -1
+                : Math.max(0, written - writtenBefore - outputSize);
+
+        Path jfrFile = null;
+        if (recording != null) {
+            jfrFile = options.jfrDir.resolve(options.sorter + "-" + iteration + ".jfr");
+            recording.stop();
+            recording.dump(jfrFile);
+            recording.close();
+        }
+
+        Boolean valid = options.verify ? new SortVerifier().verify(inputFile, outputFile).isValid() : null;
+
+        double seconds = elapsedNanos / 1e9;
+        return new Metrics(iteration, elapsedNanos / 1e6, inputSize / MB / seconds, records / seconds,
+                allocated, allocated < 0 ? -1 : allocated / MB / seconds,
+                gcTime() - gcTimeBefore, gcCount() - gcCountBefore,
+                ProcessStats.peakRss(), tempBytes, jfrFile, valid);
+    }
+
+    private Recording startRecording() throws IOException {
+        Files.createDirectories(options.jfrDir);
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration("profile"));
+            recording.start();
+            return recording;
+        } catch (ParseException e) {
+            throw new IOException("Cannot load JFR profile configuration", e);
+        }
+    }
+
+    private ExternalSorter createSorter(Path tempDir) {
+        switch (options.sorter) {
+            case "v1":
+                return new ExternalSortV1();
+            case "v2":
+                return new ExternalSortV2(options.threads(), BUFFER_SIZE, MERGE_FAN_IN);
+            case "distribution":
+                return new DistributionSort(options.threads());
+            case "dictionary":
+                return new DictionarySort(new ExternalSortV2(options.threads(), BUFFER_SIZE, MERGE_FAN_IN));
+            case "adaptive":
+                return new AdaptiveExternalSort();
+            case "resumable":
+                return new ResumableExternalSort(tempDir.resolve("resumable"));
+            case "sample":
+                return options.threads == null ? new SampleSortCoordinator()
+                        : new SampleSortCoordinator(options.threads);
+            default:
+                try {
+                    return (ExternalSorter) Class.forName(options.sorter).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException("Unknown sorter: " + options.sorter, e);
+                }
+        }
+    }
+
+    private void generateInput(Path inputFile) throws IOException {
+        DataGenerator generator = new DataGenerator(options.seed);
+        if (options.distribution.equals("random")) {
+            generator.generateFile(inputFile, options.sizeBytes);
+            return;
+        }
+
+        List<String> pool = new ArrayList<>();
+        for (int i = 0; i < DUPLICATE_POOL_SIZE; i++) {
+            pool.add(generator.generateRandomLine());
+        }
+        Collections.sort(pool);
+
+        Random random = new Random(options.seed);
+        long currentSize = 0;
+        long index = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(inputFile)) {
+            while (currentSize < options.sizeBytes) {
+                String line;
+                switch (options.distribution) {
+                    case "sorted":
+                        line = String.format("%012d", index) + pool.get((int) (index % DUPLICATE_POOL_SIZE));
+                        break;
+                    case "reversed":
+                        line = String.format("%012d", 999_999_999_999L - index)
+                                + pool.get((int) (index % DUPLICATE_POOL_SIZE));
+                        break;
+                    case "duplicates":
+                        line = pool.get(random.nextInt(DUPLICATE_POOL_SIZE));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown distribution: " + options.distribution);
+                }
+                writer.write(line);
+                writer.write('\n');
+                currentSize += line.length() + 1;
+                index++;
+            }
+        }
+    }
+
+    private static long countLines(Path file) throws IOException {
+        long lines = 0;
+        byte last = '\n';
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                last = buffer[read - 1];
+            }
+        }
+        return last == '\n' ? lines : lines + 1;
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionCount());
+        }
+        return total;
+    }
+
+    private void log(String message) {
+        if (!options.jsonOnly) {
+            System.out.println(message);
+        }
+    }
+
+    static String toJson(Options options, List<Metrics> results) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"sorter\": ").append(quote(options.sorter)).append(",\n");
+        sb.append("  \"distribution\": ").append(quote(options.distribution)).append(",\n");
+        sb.append("  \"sizeBytes\": ").append(options.sizeBytes).append(",\n");
+        sb.append("  \"memoryBytes\": ").append(options.memoryBytes).append(",\n");
+        sb.append("  \"threads\": ").append(options.threads()).append(",\n");
+        sb.append("  \"warmup\": ").append(options.warmup).append(",\n");
+        sb.append("  \"seed\": ").append(options.seed).append(",\n");
+        sb.append("  \"javaVersion\": ").append(quote(System.getProperty("java.version"))).append(",\n");
+        sb.append("  \"availableProcessors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        sb.append("  \"iterations\": [");
+        for (int i = 0; i < results.size(); i++) {
+            sb.append(i == 0 ? "\n" : ",\n").append("    ").append(results.get(i).toJson());
+        }
+        sb.append(results.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    public static class Options {
+
+        static final String USAGE = "Usage: ProfilingRunner [--sorter v1|v2|distribution|dictionary|adaptive"
+                + "|resumable|sample|<class>] [--size 20m] [--distribution random|sorted|reversed|duplicates]"
+                + " [--memory 1m] [--threads N] [--warmup 1] [--iterations 3] [--seed 42]"
+                + " [--jfr <dir>] [--json <file>|-] [--verify]";
+
+        String sorter = "v2";
+        long sizeBytes = 20L * 1024 * 1024;
+        String distribution = "random";
+        long memoryBytes = 1024 * 1024;
+        Integer threads;
+        int warmup = 1;
+        int iterations = 3;
+        long seed = 42;
+        Path jfrDir;
+        Path jsonFile;
+        boolean jsonOnly;
+        boolean verify;
+
+        public static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--verify")) {
+                    options.verify = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--sorter":
+                        options.sorter = value;
+                        break;
+                    case "--size":
+                        options.sizeBytes = parseSize(value);
+                        break;
+                    case "--distribution":
+                        options.distribution = value;
+                        break;
+                    case "--memory":
+                        options.memoryBytes = parseSize(value);
+                        break;
+                    case "--threads":
+                        options.threads = Integer.valueOf(value);
+                        break;
+                    case "--warmup":
+                        options.warmup = Integer.parseInt(value);
+                        break;
+                    case "--iterations":
+                        options.iterations = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        options.seed = Long.parseLong(value);
+                        break;
+                    case "--jfr":
+                        options.jfrDir = Path.of(value);
+                        break;
+                    case "--json":
+                        options.jsonOnly = value.equals("-");
+                        options.jsonFile = options.jsonOnly ? null : Path.of(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (!List.of("random", "sorted", "reversed", "duplicates").contains(options.distribution)) {
+                throw new IllegalArgumentException("Unknown distribution: " + options.distribution);
+            }
+            if (options.threads != null && !THREADED_SORTERS.contains(options.sorter)) {
+                throw new IllegalArgumentException("--threads is not applicable to sorter " + options.sorter);
+            }
+            if ((options.threads != null && options.threads < 1) || options.warmup < 0
+                    || options.iterations < 1 || options.memoryBytes < 1) {
+                throw new IllegalArgumentException("Invalid workload settings");
+            }
+            return options;
+        }
+
+        Integer threads() {
+            if (!THREADED_SORTERS.contains(sorter)) {
+                return null;
+            }
+            if (threads != null) {
+                return threads;
+            }
+            return sorter.equals("sample") ? SampleSortCoordinator.defaultWorkers()
+                    : Runtime.getRuntime().availableProcessors();
+        }
+
+        static long parseSize(String value) {
+            String lower = value.trim().toLowerCase(Locale.ROOT);
+            long multiplier = 1;
+            if (lower.endsWith("k")) {
+                multiplier = 1024;
+            } else if (lower.endsWith("m")) {
+                multiplier = 1024 * 1024;
+            } else if (lower.endsWith("g")) {
+                multiplier = 1024L * 1024 * 1024;
+            }
+            String digits = multiplier == 1 ? lower : lower.substring(0, lower.length() - 1);
+            try {
+                return (long) (Double.parseDouble(digits) * multiplier);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid size: " + value, e);
+            }
+        }
+    }
+
+    public static class Metrics {
+        private final int iteration;
+        private final double elapsedMs;
+        private final double mbPerSecond;
+        private final double recordsPerSecond;
+        private final long allocatedBytes;
+        private final double allocationMbPerSecond;
+        private final long gcTimeMs;
+        private final long gcCount;
+        private final long peakRssBytes;
+        private final long tempBytesWritten;
+        private final Path jfrFile;
+        private final Boolean valid;
+
+        Metrics(int iteration, double elapsedMs, double mbPerSecond, double recordsPerSecond,
+                long allocatedBytes, double allocationMbPerSecond, long gcTimeMs, long gcCount,
+                long peakRssBytes, long tempBytesWritten, Path jfrFile, Boolean valid) {
+            this.iteration = iteration;
+            this.elapsedMs = elapsedMs;
+            this.mbPerSecond = mbPerSecond;
+            this.recordsPerSecond = recordsPerSecond;
+            this.allocatedBytes = allocatedBytes;
+            this.allocationMbPerSecond = allocationMbPerSecond;
+            this.gcTimeMs = gcTimeMs;
+            this.gcCount = gcCount;
+            this.peakRssBytes = peakRssBytes;
+            this.tempBytesWritten = tempBytesWritten;
+            this.jfrFile = jfrFile;
+            this.valid = valid;
+        }
+
+        public double getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public double getMbPerSecond() {
+            return mbPerSecond;
+        }
+
+        public double getRecordsPerSecond() {
+            return recordsPerSecond;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getGcTimeMs() {
+            return gcTimeMs;
+        }
+
+        public long getPeakRssBytes() {
+            return peakRssBytes;
+        }
+
+        public long getTempBytesWritten() {
+            return tempBytesWritten;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"iteration\": %d, \"elapsedMs\": %.3f, \"mbPerSecond\": %.3f, "
+                            + "\"recordsPerSecond\": %.1f, \"allocatedBytes\": %d, \"allocationMbPerSecond\": %.3f, "
+                            + "\"gcTimeMs\": %d, \"gcCount\": %d, \"peakRssBytes\": %d, \"tempBytesWritten\": %d, "
+                            + "\"jfrFile\": %s, \"valid\": %s}",
+                    iteration, elapsedMs, mbPerSecond, recordsPerSecond, allocatedBytes, allocationMbPerSecond,
+                    gcTimeMs, gcCount, peakRssBytes, tempBytesWritten,
+                    quote(jfrFile == null ? null : jfrFile.toString()), valid);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.1f ms, %.2f MB/s, %.0f records/s, allocated %d bytes "
+                            + "(%.1f MB/s), GC %d ms in %d collections, peak RSS %d bytes, temp written %d bytes%s",
+                    elapsedMs, mbPerSecond, recordsPerSecond, allocatedBytes, allocationMbPerSecond,
+                    gcTimeMs, gcCount, peakRssBytes, tempBytesWritten,
+                    valid == null ? "" : valid ? ", output valid" : ", OUTPUT INVALID");
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package ru.aapykhin.lab2.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class SortVerifier {
+
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int BOUNDARY_WINDOW = 8 * 1024;
+    private static final long PRIME = 0x9E3779B97F4A7C15L;
+
+    private final int threads;
+    private final long segmentSize;
+
+    public SortVerifier() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SortVerifier(int threads, long segmentSize) {
+        if (threads < 1 || segmentSize < 1 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid verifier settings: threads=" + threads
+                    + ", segmentSize=" + segmentSize);
+        }
+        this.threads = threads;
+        this.segmentSize = segmentSize;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: SortVerifier <sortedFile> [inputFile]");
+            System.exit(2);
+        }
+
+        SortVerifier verifier = new SortVerifier();
+        Path sortedFile = Path.of(args[0]);
+        Result result = args.length == 1
+                ? verifier.checkSorted(sortedFile)
+                : verifier.verify(Path.of(args[1]), sortedFile);
+
+        System.out.println(result);
+        System.exit((args.length == 1 ? result.isSorted() : result.isValid()) ? 0 : 1);
+    }
+
+    public Result verify(Path inputFile, Path outputFile) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel input = FileChannel.open(inputFile, StandardOpenOption.READ);
+             FileChannel output = FileChannel.open(outputFile, StandardOpenOption.READ)) {
+            List<Future<Segment>> inputSegments = submitSegments(input, executor, false);
+            List<Future<Segment>> outputSegments = submitSegments(output, executor, true);
+
+            Result result = combine(outputSegments, true);
+            Checksum inputChecksum = combine(inputSegments, false).outputChecksum;
+            return new Result(result.sorted, result.violationOffset, inputChecksum, result.outputChecksum);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public Result checkSorted(Path file) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return combine(submitSegments(channel, executor, true), true);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public Checksum checksum(Path file) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return combine(submitSegments(channel, executor, false), false).outputChecksum;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Future<Segment>> submitSegments(FileChannel channel, ExecutorService executor,
+                                                 boolean checkOrder) throws IOException {
+        long[] bounds = segmentBounds(channel);
+
+        List<Future<Segment>> futures = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            long start = bounds[i];
+            long end = bounds[i + 1];
+            if (start < end) {
+                futures.add(executor.submit(() -> scanSegment(channel, start, end, checkOrder)));
+            }
+        }
+        return futures;
+    }
+
+    private Result combine(List<Future<Segment>> futures, boolean checkOrder) throws IOException {
+        long count = 0;
+        long sum = 0;
+        long mixedSum = 0;
+        boolean sorted = true;
+        long violationOffset = -1;
+        Segment previous = null;
+
+        for (Future<Segment> future : futures) {
+            Segment segment = get(future);
+            count += segment.count;
+            sum += segment.sum;
+            mixedSum += segment.mixedSum;
+
+            if (checkOrder && sorted) {
+                if (!segment.sorted) {
+                    sorted = false;
+                    violationOffset = segment.violationOffset;
+                } else if (previous != null && Arrays.compareUnsigned(previous.last, segment.first) > 0) {
+                    sorted = false;
+                    violationOffset = segment.start;
+                }
+            }
+            previous = segment;
+        }
+
+        return new Result(sorted, violationOffset, null, new Checksum(count, sum, mixedSum));
+    }
+
+    private long[] segmentBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int segments = (int) Math.max(1, (size + segmentSize - 1) / segmentSize);
+        long[] bounds = new long[segments + 1];
+        bounds[segments] = size;
+
+        ByteBuffer window = ByteBuffer.allocate(BOUNDARY_WINDOW);
+        for (int i = 1; i < segments; i++) {
+            long position = Math.max(i * segmentSize, bounds[i - 1]);
+            bounds[i] = nextLineStart(channel, window, position - 1, size);
+        }
+        return bounds;
+    }
+
+    private static long nextLineStart(FileChannel channel, ByteBuffer window, long position, long size)
+            throws IOException {
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private Segment scanSegment(FileChannel channel, long start, long end, boolean checkOrder) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("Line at offset " + start + " is longer than a mappable segment");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = buffer.limit();
+
+        Segment segment = new Segment(start);
+        int previousOffset = -1;
+        int previousLength = 0;
+        int lineStart = 0;
+
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int length = lineEnd - lineStart;
+            if (length > 0 && buffer.get(lineStart + length - 1) == '\r') {
+                length--;
+            }
+
+            long hash = hash(buffer, lineStart, length);
+            segment.count++;
+            segment.sum += hash;
+            segment.mixedSum += mix(hash ^ PRIME);
+
+            if (checkOrder) {
+                if (previousOffset < 0) {
+                    segment.first = copy(buffer, lineStart, length);
+                } else if (segment.sorted
+                        && compare(buffer, previousOffset, previousLength, lineStart, length) > 0) {
+                    segment.sorted = false;
+                    segment.violationOffset = start + lineStart;
+                }
+                previousOffset = lineStart;
+                previousLength = length;
+            }
+
+            lineStart = lineEnd + 1;
+        }
+
+        if (checkOrder && previousOffset >= 0) {
+            segment.last = copy(buffer, previousOffset, previousLength);
+        }
+        return segment;
+    }
+
+    private static int compare(ByteBuffer buffer, int offsetA, int lengthA, int offsetB, int lengthB) {
+        int common = Math.min(lengthA, lengthB);
+        int i = 0;
+        for (; i + Long.BYTES <= common; i += Long.BYTES) {
+            int result = Long.compareUnsigned(buffer.getLong(offsetA + i), buffer.getLong(offsetB + i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        for (; i < common; i++) {
+            int result = Integer.compare(buffer.get(offsetA + i) & 0xFF, buffer.get(offsetB + i) & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(lengthA, lengthB);
+    }
+
+    private static long hash(ByteBuffer buffer, int offset, int length) {
+        long h = PRIME * (length + 1);
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            h = Long.rotateLeft(h ^ mix(buffer.getLong(offset + i)), 27) * PRIME;
+        }
+        for (; i < length; i++) {
+            h = (h ^ (buffer.get(offset + i) & 0xFF)) * PRIME;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return bytes;
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while verifying", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to verify segment", e.getCause());
+        }
+    }
+
+    private static class Segment {
+        final long start;
+        long count;
+        long sum;
+        long mixedSum;
+        boolean sorted = true;
+        long violationOffset = -1;
+        byte[] first;
+        byte[] last;
+
+        Segment(long start) {
+            this.start = start;
+        }
+    }
+
+    public static class Checksum {
+        private final long count;
+        private final long sum;
+        private final long mixedSum;
+
+        Checksum(long count, long sum, long mixedSum) {
+            this.count = count;
+            this.sum = sum;
+            this.mixedSum = mixedSum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Checksum)) {
+                return false;
+            }
+            Checksum other = (Checksum) o;
+            return count == other.count && sum == other.sum && mixedSum == other.mixedSum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(count) * 31 * 31 + Long.hashCode(sum) * 31 + Long.hashCode(mixedSum);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d lines, %016x/%016x", count, sum, mixedSum);
+        }
+    }
+
+    public static class Result {
+        private final boolean sorted;
+        private final long violationOffset;
+        private final Checksum inputChecksum;
+        private final Checksum outputChecksum;
+
+        Result(boolean sorted, long violationOffset, Checksum inputChecksum, Checksum outputChecksum) {
+            this.sorted = sorted;
+            this.violationOffset = violationOffset;
+            this.inputChecksum = inputChecksum;
+            this.outputChecksum = outputChecksum;
+        }
+
+        public boolean isSorted() {
+            return sorted;
+        }
+
+        public long getViolationOffset() {
+            return violationOffset;
+        }
+
+        public Checksum getInputChecksum() {
+            return inputChecksum;
+        }
+
+        public Checksum getOutputChecksum() {
+            return outputChecksum;
+        }
+
+        public boolean isPermutation() {
+            return inputChecksum != null && inputChecksum.equals(outputChecksum);
+        }
+
+        public boolean isValid() {
+            return sorted && isPermutation();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(sorted ? "sorted" : "NOT sorted (first violation at byte " + violationOffset + ")");
+            sb.append(", output: ").append(outputChecksum);
+            if (inputChecksum != null) {
+                sb.append(", input: ").append(inputChecksum);
+                sb.append(isPermutation() ? ", permutation OK" : ", NOT a permutation of the input");
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.aapykhin.lab2;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryRecordSortTest {
+
+    private static final int RECORD_SIZE = 24;
+
+    private Path tempDir;
+    private Path inputFile;
+    private Path outputFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("binary_record_sort_test_");
+        inputFile = tempDir.resolve("input.bin");
+        outputFile = tempDir.resolve("output.bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.walk(tempDir)
+                .sorted((a, b) -> -a.compareTo(b))
+                .forEach(path -> {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException ignored) {
+                    }
+                });
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 5000, 20000})
+    void testSortsLongKeys(int recordCount) throws IOException {
+        byte[] input = generateRecords(recordCount, Long.BYTES);
+        Files.write(inputFile, input);
+
+        new BinaryRecordSort(RECORD_SIZE).sort(inputFile, outputFile, 16 * 1024);
+
+        assertSortedPermutation(input, Files.readAllBytes(outputFile), Long.BYTES);
+    }
+
+    @Test
+    void testSortsIntKeys() throws IOException {
+        byte[] input = generateRecords(10000, Integer.BYTES);
+        Files.write(inputFile, input);
+
+        new BinaryRecordSort(RECORD_SIZE, Integer.BYTES).sort(inputFile, outputFile, 8 * 1024);
+
+        assertSortedPermutation(input, Files.readAllBytes(outputFile), Integer.BYTES);
+    }
+
+    @Test
+    void testMergesInSeveralPassesWhenRunsExceedFanIn() throws IOException {
+        byte[] input = generateRecords(20000, Long.BYTES);
+        Files.write(inputFile, input);
+
+        new BinaryRecordSort(RECORD_SIZE, Long.BYTES, 2).sort(inputFile, outputFile, 4 * 1024);
+
+        assertSortedPermutation(input, Files.readAllBytes(outputFile), Long.BYTES);
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Files.createFile(inputFile);
+
+        new BinaryRecordSort(RECORD_SIZE).sort(inputFile, outputFile, 1024);
+
+        assertTrue(Files.exists(outputFile));
+        assertEquals(0, Files.size(outputFile));
+    }
+
+    @Test
+    void testRejectsTruncatedInput() throws IOException {
+        Files.write(inputFile, new byte[RECORD_SIZE + 1]);
+
+        assertThrows(IOException.class,
+                () -> new BinaryRecordSort(RECORD_SIZE).sort(inputFile, outputFile, 1024));
+    }
+
+    @Test
+    void testRejectsLineOptions() throws IOException {
+        byte[] input = generateRecords(100, Long.BYTES);
+        Files.write(inputFile, input);
+        BinaryRecordSort sorter = new BinaryRecordSort(RECORD_SIZE);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> sorter.sort(inputFile, outputFile, 1024, SortOptions.NONE.withPrefix("a")));
+        assertThrows(IllegalArgumentException.class,
+                () -> sorter.sort(inputFile, outputFile, 1024, SortOptions.NONE.withProjection('\t', 0)));
+        assertFalse(Files.exists(outputFile));
+
+        sorter.sort(inputFile, outputFile, 1024, SortOptions.NONE);
+        assertSortedPermutation(input, Files.readAllBytes(outputFile), Long.BYTES);
+    }
+
+    private byte[] generateRecords(int count, int keySize) {
+        Random random = new Random(12345);
+        ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            if (keySize == Long.BYTES) {
+                buffer.putLong(random.nextInt(4) == 0 ? random.nextInt(16) - 8 : random.nextLong());
+            } else {
+                buffer.putInt(random.nextInt(4) == 0 ? random.nextInt(16) - 8 : random.nextInt());
+            }
+            byte[] payload = new byte[RECORD_SIZE - keySize];
+            random.nextBytes(payload);
+            buffer.put(payload);
+        }
+        return buffer.array();
+    }
+
+    private void assertSortedPermutation(byte[] input, byte[] output, int keySize) {
+        assertEquals(input.length, output.length);
+
+        ByteBuffer sorted = ByteBuffer.wrap(output);
+        long previous = Long.MIN_VALUE;
+        for (int offset = 0; offset < output.length; offset += RECORD_SIZE) {
+            long key = keySize == Long.BYTES ? sorted.getLong(offset) : sorted.getInt(offset);
+            assertTrue(key >= previous, "Records are out of order at offset " + offset);
+            previous = key;
+        }
+
+        assertArrayEquals(recordsOf(input), recordsOf(output));
+    }
+
+    private String[] recordsOf(byte[] data) {
+        String[] records = new String[data.length / RECORD_SIZE];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = Arrays.toString(Arrays.copyOfRange(data, i * RECORD_SIZE, (i + 1) * RECORD_SIZE));
+        }
+        Arrays.sort(records);
+        return records;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.aapykhin.lab2;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ByteKernelsTest {
+
+    @Test
+    void testVectorKernelsLoadWhenAvailable() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+        assumeTrue(ByteKernels.class.getResource("VectorByteKernels.class") != null);
+
+        assertTrue(ByteKernels.load(true).getName().startsWith("vector"));
+        if (!"false".equalsIgnoreCase(System.getProperty(ByteKernels.VECTOR_PROPERTY))) {
+            assertTrue(ByteKernels.get().getName().startsWith("vector"), ByteKernels.get().getName());
+        }
+    }
+
+    @Test
+    void testIndexOfMatchesScalar() {
+        Random random = new Random(42);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) (random.nextInt(40) == 0 ? '\n' : 'a' + random.nextInt(26)));
+        }
+
+        ByteKernels kernels = ByteKernels.get();
+        for (int trial = 0; trial < 1000; trial++) {
+            int from = random.nextInt(buffer.capacity());
+            int to = from + random.nextInt(buffer.capacity() - from + 1);
+            assertEquals(ByteKernels.scalar().indexOf(buffer, from, to, (byte) '\n'),
+                    kernels.indexOf(buffer, from, to, (byte) '\n'), kernels.getName());
+        }
+        assertEquals(-1, kernels.indexOf(buffer, 10, 10, (byte) '\n'));
+    }
+
+    @Test
+    void testMismatchMatchesScalar() {
+        Random random = new Random(7);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        for (int i = 0; i < 2048; i++) {
+            byte value = (byte) random.nextInt(256);
+            buffer.put(i, value).put(2048 + i, value);
+        }
+
+        ByteKernels kernels = ByteKernels.get();
+        for (int trial = 0; trial < 1000; trial++) {
+            int offset = random.nextInt(1024);
+            int length = random.nextInt(1024);
+            int changed = random.nextInt(length + 1);
+            if (changed < length) {
+                buffer.put(2048 + offset + changed, (byte) (buffer.get(offset + changed) ^ 0x80));
+            }
+
+            int expected = ByteKernels.scalar().mismatch(buffer, offset, 2048 + offset, length);
+            assertEquals(changed < length ? changed : -1, expected);
+            assertEquals(expected, kernels.mismatch(buffer, offset, 2048 + offset, length), kernels.getName());
+
+            if (changed < length) {
+                buffer.put(2048 + offset + changed, buffer.get(offset + changed));
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -186,6 +187,268 @@ class ExternalSortTest {
         assertEquals(expected, Files.readAllLines(outputFileV2));
     }
 
+    @Test
+    void testV2HandlesLinesLongerThanChunk() throws IOException {
+        List<String> lines = generateTestLines(200);
+        Files.write(inputFile, lines);
+
+        new ExternalSortV2().sort(inputFile, outputFileV2, 64);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertEquals(expected, Files.readAllLines(outputFileV2));
+    }
+
+    @Test
+    void testV2HandlesCrLfAndMissingTrailingNewline() throws IOException {
+        Files.writeString(inputFile, "ccc\r\naaa\r\n\r\nbbb");
+
+        new ExternalSortV2().sort(inputFile, outputFileV2, 8);
+
+        assertEquals(List.of("", "aaa", "bbb", "ccc"), Files.readAllLines(outputFileV2));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100, 1000, 5000})
+    void testDistributionSortWithDifferentSizes(int lineCount) throws IOException {
+        List<String> lines = generateTestLines(lineCount);
+        Files.write(inputFile, lines);
+
+        Path outputFile = tempDir.resolve("output_distribution.txt");
+        new DistributionSort().sort(inputFile, outputFile, 8 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testDistributionSortWithSkewedDuplicates() throws IOException {
+        List<String> lines = generateTestLines(500);
+        for (int i = 0; i < 3000; i++) {
+            lines.add(i % 3 == 0 ? "skewed" : "hot");
+        }
+        Collections.shuffle(lines, new Random(7));
+        Files.write(inputFile, lines);
+
+        Path outputFile = tempDir.resolve("output_distribution.txt");
+        new DistributionSort().sort(inputFile, outputFile, 4 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testDictionarySortWithDuplicateHeavyInput() throws IOException {
+        List<String> distinct = generateTestLines(50);
+        Random random = new Random(3);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            lines.add(distinct.get(random.nextInt(distinct.size())));
+        }
+        Files.write(inputFile, lines);
+
+        Path outputFile = tempDir.resolve("output_dictionary.txt");
+        DictionarySort sorter = new DictionarySort();
+        sorter.sort(inputFile, outputFile, 64 * 1024);
+
+        Collections.sort(lines);
+        assertFalse(sorter.isFallbackUsed());
+        assertEquals(lines, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testDictionarySortFallsBackWhenDictionaryExceedsBudget() throws IOException {
+        List<String> lines = generateTestLines(2000);
+        Files.write(inputFile, lines);
+
+        Path outputFile = tempDir.resolve("output_dictionary.txt");
+        DictionarySort sorter = new DictionarySort();
+        sorter.sort(inputFile, outputFile, 16 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertTrue(sorter.isFallbackUsed());
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testAdaptiveSortPlansInMemoryForSmallInput() throws IOException {
+        List<String> lines = generateTestLines(500);
+        Files.write(inputFile, lines);
+
+        Path outputFile = tempDir.resolve("output_adaptive.txt");
+        AdaptiveExternalSort sorter = new AdaptiveExternalSort();
+        sorter.sort(inputFile, outputFile, 16 * 1024 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertEquals(SortPlan.Strategy.IN_MEMORY, sorter.getLastPlan().getStrategy());
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testAdaptiveSortPlansMergeForLargeInput() throws IOException {
+        List<String> lines = generateTestLines(5000);
+        Files.write(inputFile, lines);
+
+        Path outputFile = tempDir.resolve("output_adaptive.txt");
+        AdaptiveExternalSort sorter = new AdaptiveExternalSort();
+        SortPlan plan = sorter.explain(inputFile, 64 * 1024);
+        sorter.sort(inputFile, outputFile, 64 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertEquals(SortPlan.Strategy.MULTI_PASS, plan.getStrategy());
+        assertFalse(plan.getReasons().isEmpty());
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testResumableSortReusesWorkAfterFailedMerge() throws IOException {
+        List<String> lines = generateTestLines(5000);
+        Files.write(inputFile, lines);
+
+        Path workDir = tempDir.resolve("resumable");
+        ResumableExternalSort sorter = new ResumableExternalSort(workDir, 4);
+        assertThrows(IOException.class,
+                () -> sorter.sort(inputFile, tempDir.resolve("missing").resolve("output.txt"), 8 * 1024));
+        assertTrue(Files.exists(workDir.resolve("manifest.properties")));
+
+        Path outputFile = tempDir.resolve("output_resumable.txt");
+        sorter.sort(inputFile, outputFile, 8 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertTrue(sorter.getReusedPasses() > 0);
+        assertEquals(expected, Files.readAllLines(outputFile));
+        try (var files = Files.list(workDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testResumableSortReusesRunsWithRecordedChecksums() throws IOException {
+        List<String> lines = generateTestLines(5000);
+        Files.write(inputFile, lines);
+
+        Path workDir = tempDir.resolve("resumable");
+        ResumableExternalSort sorter = new ResumableExternalSort(workDir, 64);
+        assertThrows(IOException.class,
+                () -> sorter.sort(inputFile, tempDir.resolve("missing").resolve("output.txt"), 64 * 1024));
+
+        Path outputFile = tempDir.resolve("output_resumable.txt");
+        sorter.sort(inputFile, outputFile, 64 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertTrue(sorter.getReusedRuns() > 1);
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testResumableSortRestartsWhenInputChanges() throws IOException {
+        Files.write(inputFile, generateTestLines(2000));
+
+        Path workDir = tempDir.resolve("resumable");
+        ResumableExternalSort sorter = new ResumableExternalSort(workDir, 4);
+        assertThrows(IOException.class,
+                () -> sorter.sort(inputFile, tempDir.resolve("missing").resolve("output.txt"), 8 * 1024));
+
+        List<String> lines = generateTestLines(3000);
+        Files.write(inputFile, lines);
+        Path outputFile = tempDir.resolve("output_resumable.txt");
+        sorter.sort(inputFile, outputFile, 8 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertEquals(0, sorter.getReusedRuns());
+        assertEquals(0, sorter.getReusedPasses());
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testFilterAndProjectionArePushedIntoSplitPhase() throws IOException {
+        DataGenerator generator = new DataGenerator(7);
+        Random random = new Random(7);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String key = (random.nextBoolean() ? "keep-" : "drop-") + random.nextInt(1000);
+            lines.add(key + "\t" + generator.generateRandomLine() + "\t" + random.nextInt(100000));
+        }
+        Files.write(inputFile, lines);
+
+        SortOptions options = SortOptions.NONE
+                .withPrefix("keep-")
+                .withFilter(line -> line.length() % 3 != 0)
+                .withProjection('\t', 2, 0);
+        List<String> expected = new ArrayList<>();
+        for (String line : lines) {
+            if (line.startsWith("keep-") && line.length() % 3 != 0) {
+                String[] fields = line.split("\t");
+                expected.add(fields[2] + "\t" + fields[0]);
+            }
+        }
+        Collections.sort(expected);
+
+        new ExternalSortV1().sort(inputFile, outputFileV1, 16 * 1024, options);
+        new ExternalSortV2(2, 4096, 4).sort(inputFile, outputFileV2, 16 * 1024, options);
+        Path outputFile = tempDir.resolve("output_distribution.txt");
+        new DistributionSort().sort(inputFile, outputFile, 16 * 1024, options);
+
+        assertEquals(expected, Files.readAllLines(outputFileV1));
+        assertEquals(expected, Files.readAllLines(outputFileV2));
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testProjectionSkipsMissingFields() {
+        SortOptions options = SortOptions.NONE.withProjection(',', 3, 1);
+        byte[] line = "a,b".getBytes();
+        byte[] target = new byte[line.length];
+
+        assertEquals("b", options.project("a,b"));
+        assertEquals(1, options.project(line, line.length, target));
+        assertEquals('b', target[0]);
+        assertThrows(IllegalArgumentException.class, () -> SortOptions.NONE.withProjection(',', 1, 1));
+    }
+
+    @Test
+    void testV2StreamsOversizedLinesThroughOverflow() throws IOException {
+        List<String> lines = generateTestLines(2000);
+        String shared = "x".repeat(100);
+        lines.add(shared + "b".repeat(200_000));
+        lines.add(shared + "a".repeat(300_000));
+        lines.add(shared + "a".repeat(300_000));
+        lines.add(shared + "a".repeat(299_999) + "b");
+        lines.add(shared);
+        lines.add("M" + "z".repeat(150_000));
+        Collections.shuffle(lines, new Random(3));
+        Files.writeString(inputFile, String.join("\r\n", lines));
+
+        new ExternalSortV2(2, 4096, 4, 16 * 1024).sort(inputFile, outputFileV2, 32 * 1024);
+
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        assertEquals(expected, Files.readAllLines(outputFileV2));
+    }
+
+    @Test
+    void testV2AppliesPrefixFilterToOversizedLines() throws IOException {
+        List<String> lines = List.of("keep-small", "drop-" + "d".repeat(100_000), "keep-" + "k".repeat(100_000),
+                "drop-small", "keep-another");
+        Files.write(inputFile, lines);
+
+        new ExternalSortV2(1, 4096, 4, 8 * 1024)
+                .sort(inputFile, outputFileV2, 16 * 1024, SortOptions.NONE.withPrefix("keep-"));
+
+        assertEquals(List.of("keep-another", "keep-" + "k".repeat(100_000), "keep-small"),
+                Files.readAllLines(outputFileV2));
+        assertThrows(IOException.class, () -> new ExternalSortV2(1, 4096, 4, 8 * 1024)
+                .sort(inputFile, outputFileV2, 16 * 1024, SortOptions.NONE.withFilter(line -> true)));
+    }
+
     private List<String> generateTestLines(int count) {
         DataGenerator generator = new DataGenerator(12345);
         List<String> lines = new ArrayList<>();
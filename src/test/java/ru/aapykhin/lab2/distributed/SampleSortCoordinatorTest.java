@@ -0,0 +1,76 @@
+package ru.aapykhin.lab2.distributed;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.aapykhin.lab2.util.DataGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampleSortCoordinatorTest {
+
+    private Path tempDir;
+    private Path inputFile;
+    private Path outputFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("sample_sort_test_");
+        inputFile = tempDir.resolve("input.txt");
+        outputFile = tempDir.resolve("output.txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.walk(tempDir)
+                .sorted((a, b) -> -a.compareTo(b))
+                .forEach(path -> {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException ignored) {
+                    }
+                });
+    }
+
+    @Test
+    void testSortsAcrossWorkerProcesses() throws IOException {
+        DataGenerator generator = new DataGenerator(42);
+        generator.generateFileWithLineCount(inputFile, 3000);
+
+        new SampleSortCoordinator(3, List.of("-Xmx64m")).sort(inputFile, outputFile, 64 * 1024);
+
+        List<String> expected = new ArrayList<>(Files.readAllLines(inputFile));
+        Collections.sort(expected);
+        assertEquals(expected, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testDuplicateKeysAndSingleLine() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            lines.add(i % 5 == 0 ? "single" : "same");
+        }
+        Files.write(inputFile, lines);
+
+        new SampleSortCoordinator(2).sort(inputFile, outputFile, 4 * 1024);
+
+        Collections.sort(lines);
+        assertEquals(lines, Files.readAllLines(outputFile));
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Files.createFile(inputFile);
+
+        new SampleSortCoordinator(2).sort(inputFile, outputFile, 1024);
+
+        assertEquals(0, Files.size(outputFile));
+    }
+}
@@ -0,0 +1,89 @@
+package ru.aapykhin.lab2.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.aapykhin.lab2.ExternalSortV2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortVerifierTest {
+
+    private Path tempDir;
+    private Path inputFile;
+    private Path outputFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("sort_verifier_test_");
+        inputFile = tempDir.resolve("input.txt");
+        outputFile = tempDir.resolve("output.txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.walk(tempDir)
+                .sorted((a, b) -> -a.compareTo(b))
+                .forEach(path -> {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException ignored) {
+                    }
+                });
+    }
+
+    @Test
+    void testVerifiesSortedPermutation() throws IOException {
+        DataGenerator generator = new DataGenerator(42);
+        generator.generateFile(inputFile, 4L * 1024 * 1024);
+
+        new ExternalSortV2().sort(inputFile, outputFile, 256 * 1024);
+
+        SortVerifier.Result result = new SortVerifier(4, 64 * 1024).verify(inputFile, outputFile);
+        assertTrue(result.isSorted());
+        assertTrue(result.isPermutation());
+        assertTrue(result.isValid());
+    }
+
+    @Test
+    void testDetectsDisorderAcrossSegmentBoundary() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add(String.format("line%05d", i));
+        }
+        Collections.swap(lines, 499, 500);
+        Files.write(outputFile, lines);
+
+        SortVerifier.Result result = new SortVerifier(2, 5000).checkSorted(outputFile);
+        assertFalse(result.isSorted());
+        assertEquals(500L * 10, result.getViolationOffset());
+    }
+
+    @Test
+    void testDetectsMissingAndDuplicatedLines() throws IOException {
+        Files.write(inputFile, List.of("b", "a", "c", "a"));
+        Files.write(outputFile, List.of("a", "b", "c", "c"));
+
+        SortVerifier.Result result = new SortVerifier(2, 4).verify(inputFile, outputFile);
+        assertTrue(result.isSorted());
+        assertFalse(result.isPermutation());
+        assertEquals(4, result.getOutputChecksum().getCount());
+    }
+
+    @Test
+    void testChecksumIgnoresOrderAndLineEndings() throws IOException {
+        Files.writeString(inputFile, "b\r\na\r\nc");
+        Files.writeString(outputFile, "a\nb\nc\n");
+
+        SortVerifier verifier = new SortVerifier();
+        assertEquals(verifier.checksum(inputFile), verifier.checksum(outputFile));
+        assertTrue(verifier.verify(inputFile, outputFile).isValid());
+    }
+}